@@ -7,6 +7,20 @@
 
 #define WATER_SPEC 1.0
 
+// Per-frame constants, uploaded once per frame by the FrameConstantsNode. Must match the declaration documented there.
+layout(std140) uniform FrameConstants {
+    mat4 projectionMatrix;
+    mat4 invProjectionMatrix;
+    mat4 viewProjectionMatrix;
+    mat4 invViewProjectionMatrix;
+    mat4 prevViewProjectionMatrix;
+    vec4 sunDirection;
+    float zNear;
+    float zFar;
+    float time;
+    float daylight;
+} frame;
+
 #ifdef FEATURE_REFRACTIVE_PASS
 uniform vec4 waterSettingsFrag;
 #define waterNormalBias waterSettingsFrag.x
@@ -20,7 +34,14 @@ uniform vec4 lightingSettingsFrag;
 #define waterSpecExp lightingSettingsFrag.z
 
 uniform sampler2D textureWater;
+#if defined (LOCAL_REFLECTIONS)
+// Screen-space reflections replace the planar ones: the sky is sampled here, and the PrePostCompositeNode
+// traces the landscape reflected by the water, keeping the sky where the rays miss.
+uniform samplerCube skyCubemap;
+uniform mat3 invViewRotation;
+#else
 uniform sampler2D textureWaterReflection;
+#endif
 uniform sampler2D texSceneOpaque;
 uniform sampler2D textureWaterNormal;
 uniform sampler2D textureWaterNormalAlt;
@@ -60,8 +81,6 @@ flat in int isUpside;
 uniform sampler2D textureAtlas;
 uniform sampler2D textureEffects;
 
-uniform float clip;
-
 in float v_sunlight;
 in float v_blocklight;
 in float v_ambientLight;
@@ -78,13 +97,6 @@ layout(location = 2) out vec4 outLight;
 
 void main() {
 
-// Active for worldReflectionNode only.
-#if defined FEATURE_USE_FORWARD_LIGHTING
-    if (vertexWorldPos.y < clip) {
-        discard;
-    }
-#endif
-
     vec2 texCoord = v_uv0.xy;
 
     vec3 normalizedViewPos = -normalize(vertexViewPos.xyz);
@@ -139,8 +151,8 @@ void main() {
     if (BLOCK_HINT_WATER_SURFACE == v_blockHint && isUpside == 1) {
         vec2 scaledVertexWorldPos = vertexWorldPos.xz / 32.0;
 
-        vec2 waterOffset = vec2(scaledVertexWorldPos.x + timeToTick(time, 0.0075), scaledVertexWorldPos.y + timeToTick(time, 0.0075));
-        vec2 waterOffset2 = vec2(scaledVertexWorldPos.x + timeToTick(time, 0.005), scaledVertexWorldPos.y - timeToTick(time, 0.005));
+        vec2 waterOffset = vec2(scaledVertexWorldPos.x + timeToTick(frame.time, 0.0075), scaledVertexWorldPos.y + timeToTick(frame.time, 0.0075));
+        vec2 waterOffset2 = vec2(scaledVertexWorldPos.x + timeToTick(frame.time, 0.005), scaledVertexWorldPos.y - timeToTick(frame.time, 0.005));
 
         normalWaterOffset = (texture(textureWaterNormal, waterOffset).xyz * 2.0 - 1.0).xy;
         normalWaterOffset += (texture(textureWaterNormalAlt, waterOffset2).xyz * 2.0 - 1.0).xy;
@@ -159,8 +171,8 @@ void main() {
 
     /* DAYLIGHT BECOMES... MOONLIGHT! */
     // Now featuring linear interpolation to make the transition smoother... :-)
-    if (daylight < 0.1) {
-        sunVecViewAdjusted = mix(sunVecViewAdjusted * -1.0, sunVecViewAdjusted, daylight / 0.1);
+    if (frame.daylight < 0.1) {
+        sunVecViewAdjusted = mix(sunVecViewAdjusted * -1.0, sunVecViewAdjusted, frame.daylight / 0.1);
     }
 #endif
 
@@ -212,10 +224,15 @@ void main() {
     // Apply reflection and refraction AFTER the lighting has been applied (otherwise bright areas below water become dark)
     // The water tint has still to be adjusted adjusted though...
     if (isWater && isOceanWater) {
-        float specularHighlight = WATER_SPEC * calcDayAndNightLightingFactor(daylightValue, daylight) * calcSpecLightNormalized(normalWater, sunVecViewAdjusted, normalizedViewPos, waterSpecExp);
+        float specularHighlight = WATER_SPEC * calcDayAndNightLightingFactor(daylightValue, frame.daylight) * calcSpecLightNormalized(normalWater, sunVecViewAdjusted, normalizedViewPos, waterSpecExp);
         color.xyz += vec3(specularHighlight, specularHighlight, specularHighlight);
 
+#if defined (LOCAL_REFLECTIONS)
+        vec3 reflectionDirection = invViewRotation * reflect(-normalizedViewPos, normalWater);
+        vec4 reflectionColor = vec4(texture(skyCubemap, reflectionDirection).xyz, 1.0);
+#else
         vec4 reflectionColor = vec4(texture(textureWaterReflection, projectedPos + normalWaterOffset.xy * waterRefraction).xyz, 1.0);
+#endif
         vec4 refractionColor = vec4(texture(texSceneOpaque, projectedPos + normalWaterOffset.xy * waterRefraction).xyz, 1.0);
         vec4 litWaterTint = vec4(WATER_TINT) * vec4(combinedLightValue.x, combinedLightValue.y, combinedLightValue.z, 1.0);
 
@@ -232,7 +249,7 @@ void main() {
     } else if (isWater) {
         texCoord.x = mod(texCoord.x, TEXTURE_OFFSET) * (1.0 / TEXTURE_OFFSET);
         texCoord.y = mod(texCoord.y, TEXTURE_OFFSET) / (128.0 / (1.0 / TEXTURE_OFFSET));
-        texCoord.y += mod(timeToTick(time, -0.1), 127.0) * (1.0/128.0);
+        texCoord.y += mod(timeToTick(frame.time, -0.1), 127.0) * (1.0/128.0);
         vec4 albedoColor = texture(textureWater, texCoord.xy).rgba;
         albedoColor.rgb *= combinedLightValue;
 
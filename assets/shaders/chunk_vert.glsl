@@ -2,6 +2,20 @@
 // Copyright 2021 The Terasology Foundation
 // SPDX-License-Identifier: Apache-2.0
 
+// Per-frame constants, uploaded once per frame by the FrameConstantsNode. Must match the declaration documented there.
+layout(std140) uniform FrameConstants {
+    mat4 projectionMatrix;
+    mat4 invProjectionMatrix;
+    mat4 viewProjectionMatrix;
+    mat4 invViewProjectionMatrix;
+    mat4 prevViewProjectionMatrix;
+    vec4 sunDirection;
+    float zNear;
+    float zFar;
+    float time;
+    float daylight;
+} frame;
+
 #ifdef FEATURE_REFRACTIVE_PASS
 out vec3 waterNormalViewSpace;
 #endif
@@ -45,7 +59,7 @@ float calcWaterHeightAtOffset(vec2 worldPos) {
     float intens = waveIntensity;
     float timeFactor = waveSpeed;
     for (int i=0; i<OCEAN_OCTAVES; ++i) {
-        height += (smoothTriangleWave(timeToTick(time, timeFactor) + worldPos.x * waveDirections[i].x
+        height += (smoothTriangleWave(timeToTick(frame.time, timeFactor) + worldPos.x * waveDirections[i].x
             * size + worldPos.y * waveDirections[i].y * size) * 2.0 - 1.0) * intens;
 
         size *= waveSizeFalloff;
@@ -85,9 +99,13 @@ uniform vec3 chunkPositionWorld;
 uniform bool animated;
 
 uniform mat4 modelViewMatrix;
-uniform mat4 projectionMatrix;
 uniform mat3 normalMatrix;
 
+// Active for worldReflectionNode only: the height of the reflecting plane, below which nothing is reflected.
+#if defined FEATURE_USE_FORWARD_LIGHTING
+uniform float clip;
+#endif
+
 out vec3 normal;
 
 out vec3 vertexWorldPos;
@@ -125,14 +143,14 @@ void main() {
     vertexWorldPos = in_vert + chunkPositionWorld.xyz;
 
     if (in_frames > 0) {
-        float globalFrameIndex = floor(time * 6 *60*60*24/48); // 6Hz at default world time scale
+        float globalFrameIndex = floor(frame.time * 6 *60*60*24/48); // 6Hz at default world time scale
         float frameIndex = mod(globalFrameIndex, in_frames);
         float frame_x = in_uv0.x + (frameIndex * TEXTURE_OFFSET);
         v_uv0.y = in_uv0.y + floor(frame_x) * TEXTURE_OFFSET;
         v_uv0.x = mod(frame_x, 1);
     }
 
-    sunVecView = (modelViewMatrix * vec4(sunVec.x, sunVec.y, sunVec.z, 0.0)).xyz;
+    sunVecView = (modelViewMatrix * vec4(frame.sunDirection.xyz, 0.0)).xyz;
 
     isUpside = in_normal.y > 0.9 ? 1 : 0;
 
@@ -143,9 +161,9 @@ void main() {
 
 
 #ifdef FLICKERING_LIGHT
-    flickeringLightOffset = smoothTriangleWave(timeToTick(time, 0.5)) / 16.0;
-    flickeringLightOffset += smoothTriangleWave(timeToTick(time, 0.25) + 0.3762618) / 8.0;
-    flickeringLightOffset += smoothTriangleWave(timeToTick(time, 0.1) + 0.872917) / 4.0;
+    flickeringLightOffset = smoothTriangleWave(timeToTick(frame.time, 0.5)) / 16.0;
+    flickeringLightOffset += smoothTriangleWave(timeToTick(frame.time, 0.25) + 0.3762618) / 8.0;
+    flickeringLightOffset += smoothTriangleWave(timeToTick(frame.time, 0.1) + 0.872917) / 4.0;
 #endif
 
 #ifdef ANIMATED_GRASS
@@ -154,13 +172,13 @@ void main() {
         if (v_blockHint == BLOCK_HINT_WAVING) {
            // Only animate the upper two vertices
            if (mod(v_uv0.y, TEXTURE_OFFSET) < TEXTURE_OFFSET / 2.0) {
-               vertexViewPos.x += (smoothTriangleWave(timeToTick(time, 0.2) + vertexWorldPos.x * 0.1 + vertexWorldPos.z * 0.1) * 2.0 - 1.0) * 0.1 * blockScale;
-               vertexViewPos.y += (smoothTriangleWave(timeToTick(time, 0.1) + vertexWorldPos.x * -0.5 + vertexWorldPos.z * -0.5) * 2.0 - 1.0) * 0.05 * blockScale;
+               vertexViewPos.x += (smoothTriangleWave(timeToTick(frame.time, 0.2) + vertexWorldPos.x * 0.1 + vertexWorldPos.z * 0.1) * 2.0 - 1.0) * 0.1 * blockScale;
+               vertexViewPos.y += (smoothTriangleWave(timeToTick(frame.time, 0.1) + vertexWorldPos.x * -0.5 + vertexWorldPos.z * -0.5) * 2.0 - 1.0) * 0.05 * blockScale;
            }
         } else if (v_blockHint == BLOCK_HINT_WAVING_BLOCK) {
-            vertexViewPos.x += (smoothTriangleWave(timeToTick(time, 0.1) + vertexWorldPos.x * 0.01 + vertexWorldPos.z * 0.01) * 2.0 - 1.0) * 0.01 * blockScale;
-            vertexViewPos.y += (smoothTriangleWave(timeToTick(time, 0.15) + vertexWorldPos.x * -0.01 + vertexWorldPos.z * -0.01) * 2.0 - 1.0) * 0.05 * blockScale;
-            vertexViewPos.z += (smoothTriangleWave(timeToTick(time, 0.1) + vertexWorldPos.x * -0.01 + vertexWorldPos.z * -0.01) * 2.0 - 1.0) * 0.01 * blockScale;
+            vertexViewPos.x += (smoothTriangleWave(timeToTick(frame.time, 0.1) + vertexWorldPos.x * 0.01 + vertexWorldPos.z * 0.01) * 2.0 - 1.0) * 0.01 * blockScale;
+            vertexViewPos.y += (smoothTriangleWave(timeToTick(frame.time, 0.15) + vertexWorldPos.x * -0.01 + vertexWorldPos.z * -0.01) * 2.0 - 1.0) * 0.05 * blockScale;
+            vertexViewPos.z += (smoothTriangleWave(timeToTick(frame.time, 0.1) + vertexWorldPos.x * -0.01 + vertexWorldPos.z * -0.01) * 2.0 - 1.0) * 0.01 * blockScale;
         }
     }
 #endif
@@ -178,9 +196,14 @@ void main() {
     #endif
 #endif
 
-    vertexProjPos = projectionMatrix * vertexViewPos;
+    vertexProjPos = frame.projectionMatrix * vertexViewPos;
     gl_Position = vertexProjPos;
 
+#if defined FEATURE_USE_FORWARD_LIGHTING
+    // Clipping rather than discarding in the fragment shader keeps early depth testing available.
+    gl_ClipDistance[0] = vertexWorldPos.y - clip;
+#endif
+
 #if defined (FEATURE_ALPHA_REJECT)
     //TODO: find the right methods to determine which vertices have normals facing away from the viewpoint, and only alter those
     //if (normal.x * vertexViewPos.x < 0 || normal.y * vertexViewPos.y < 0 || normal.z * vertexViewPos.z < 0) {
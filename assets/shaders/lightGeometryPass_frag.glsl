@@ -34,15 +34,69 @@ uniform vec4 lightExtendedProperties;
     #define SHADOW_MAP_BIAS 0.0001
 
     #if defined (FEATURE_LIGHT_DIRECTIONAL)
-    uniform sampler2D texSceneShadowMap;
+    // Sampled with depth comparison and linear filtering: each fetch returns the lit fraction of 2x2 texels.
+    uniform sampler2DShadow texSceneShadowMap;
+
+    // Exponential variance shadow map moments, see ShadowMomentsNode.
+    uniform sampler2D texSceneShadowMoments;
+    uniform int useShadowMoments;
+    uniform float shadowMomentsExponent;
+    uniform float lightBleedingReduction;
+
+    float chebyshevUpperBound(vec2 moments, float mean, float minVariance) {
+        float variance = max(moments.y - moments.x * moments.x, minVariance);
+        float delta = mean - moments.x;
+        float upperBound = variance / (variance + delta * delta);
+        // Cuts off the tail of the bound, which otherwise shows as light leaking where shadows overlap.
+        upperBound = clamp((upperBound - lightBleedingReduction) / (1.0 - lightBleedingReduction), 0.0, 1.0);
+        return mean <= moments.x ? 1.0 : upperBound;
+    }
+
+    float getMomentsShadowTerm(vec4 moments, float depth) {
+        depth = 2.0 * depth - 1.0;
+        vec2 warpedDepth = vec2(exp(shadowMomentsExponent * depth), -exp(-shadowMomentsExponent * depth));
+        // The minimum variance is scaled by the derivative of the warp, to be equally effective at all depths.
+        vec2 minVariance = 0.0001 * shadowMomentsExponent * warpedDepth;
+        minVariance *= minVariance;
+        return min(chebyshevUpperBound(moments.xy, warpedDepth.x, minVariance.x),
+                   chebyshevUpperBound(moments.zw, warpedDepth.y, minVariance.y));
+    }
+    #endif
+
+    #if defined (DYNAMIC_SHADOWS_PCF)
+    #define MAX_SHADOW_TAPS 16
+    uniform int shadowTapCount;
+    uniform float shadowFilterRadius;
+
+    const vec2 POISSON_DISK[MAX_SHADOW_TAPS] = vec2[](
+        vec2(-0.94201624, -0.39906216), vec2(0.94558609, -0.76890725),
+        vec2(-0.09418410, -0.92938870), vec2(0.34495938, 0.29387760),
+        vec2(-0.91588581, 0.45771432), vec2(-0.81544232, -0.87912464),
+        vec2(-0.38277543, 0.27676845), vec2(0.97484398, 0.75648379),
+        vec2(0.44323325, -0.97511554), vec2(0.53742981, -0.47373420),
+        vec2(-0.26496911, -0.41893023), vec2(0.79197514, 0.19090188),
+        vec2(-0.24188840, 0.99706507), vec2(-0.81409955, 0.91437590),
+        vec2(0.19984126, 0.78641367), vec2(0.14383161, -0.14100790)
+    );
     #endif
 
     uniform vec3 activeCameraToLightSpace;
     uniform mat4 lightMatrix;
-    uniform mat4 invViewProjMatrix;
 #endif
 
-uniform mat4 invProjMatrix;
+// Per-frame constants, uploaded once per frame by the FrameConstantsNode. Must match the declaration documented there.
+layout(std140) uniform FrameConstants {
+    mat4 projectionMatrix;
+    mat4 invProjectionMatrix;
+    mat4 viewProjectionMatrix;
+    mat4 invViewProjectionMatrix;
+    mat4 prevViewProjectionMatrix;
+    vec4 sunDirection;
+    float zNear;
+    float zFar;
+    float time;
+    float daylight;
+} frame;
 
 layout(location = 0) out vec4 outLight;
 
@@ -63,7 +117,7 @@ void main() {
 
     vec3 lightDir;
     // TODO: Costly - would be nice to use Crytek's view frustum ray method at this point
-    vec3 viewSpacePos = reconstructViewPos(depth, projectedPos, invProjMatrix);
+    vec3 viewSpacePos = reconstructViewPos(depth, projectedPos, frame.invProjectionMatrix);
 
 #if defined (FEATURE_LIGHT_POINT)
     lightDir = lightViewPos.xyz - viewSpacePos;
@@ -74,33 +128,37 @@ void main() {
 
 #if defined (DYNAMIC_SHADOWS) && defined (FEATURE_LIGHT_DIRECTIONAL)
     // TODO: Uhhh... Doing this twice here :/ Frustum ray would be better!
-    vec3 worldPosition = reconstructViewPos(depth, v_uv0.xy, invViewProjMatrix);
+    vec3 worldPosition = reconstructViewPos(depth, v_uv0.xy, frame.invViewProjectionMatrix);
     vec3 lightWorldPosition = worldPosition.xyz + activeCameraToLightSpace;
 
     vec4 shadowMapTexPos = lightMatrix * vec4(lightWorldPosition.x, lightWorldPosition.y, lightWorldPosition.z, 1.0);
     highp float shadowTerm = 0.0;
     highp float bias = max(SHADOW_MAP_BIAS * (1.0 - dot(normal, lightDir)), SHADOW_MAP_BIAS);
 
+    if (useShadowMoments != 0) {
+        shadowTerm = getMomentsShadowTerm(texture(texSceneShadowMoments, shadowMapTexPos.xy), shadowMapTexPos.z);
+    } else {
     #if defined (DYNAMIC_SHADOWS_PCF)
+        // Poisson disk, rotated per pixel by interleaved gradient noise: banding turns into fine noise.
         vec2 texelSize = 1.0 / textureSize(texSceneShadowMap, 0);
-        for(int x = -1; x <= 1; ++x) {
-            for(int y = -1; y <= 1; ++y) {
-                vec2 shadowPos = shadowMapTexPos.xy + vec2(x, y) * texelSize;
-                highp float pcfDepth = texture(texSceneShadowMap, shadowPos).r;
-                shadowTerm += (shadowMapTexPos.z + bias > pcfDepth) ? 0.0 : 1.0;
-            }
+        float kernelAngle = 6.2831853 * fract(52.9829189 * fract(dot(gl_FragCoord.xy, vec2(0.06711056, 0.00583715))));
+        mat2 kernelRotation = mat2(cos(kernelAngle), sin(kernelAngle), -sin(kernelAngle), cos(kernelAngle));
+        int tapCount = clamp(shadowTapCount, 1, MAX_SHADOW_TAPS);
+        for (int i = 0; i < tapCount; ++i) {
+            vec2 shadowPos = shadowMapTexPos.xy + kernelRotation * POISSON_DISK[i] * shadowFilterRadius * texelSize;
+            shadowTerm += texture(texSceneShadowMap, vec3(shadowPos, shadowMapTexPos.z + bias));
         }
-        shadowTerm /= 9.0;
+        shadowTerm /= float(tapCount);
     #else
-        highp float pcfDepth = texture(texSceneShadowMap, shadowMapTexPos.xy).r;
-        shadowTerm = (shadowMapTexPos.z + bias > pcfDepth) ? 0.0 : 1.0;
+        shadowTerm = texture(texSceneShadowMap, vec3(shadowMapTexPos.xy, shadowMapTexPos.z + bias));
     #endif
+    }
 
     #if defined (CLOUD_SHADOWS) && !defined (VOLUMETRIC_LIGHTING)
         // TODO: Add shader parameters for this...
         // Get the preconfigured value from the randomized texture, sampling a value from it to determine how much cloud shadow there will be.
         // Clamp the value so that clouds do not turn the surface black.
-        float cloudOcclusion = clamp(texture(texSceneClouds, (worldPosition.xz + cameraPosition.xz) * 0.005 + timeToTick(time, 0.002)).r * 10,0.6,1);
+        float cloudOcclusion = clamp(texture(texSceneClouds, (worldPosition.xz + cameraPosition.xz) * 0.005 + timeToTick(frame.time, 0.002)).r * 10,0.6,1);
 
         // Combine the cloud shadow with the dynamic shadows
         shadowTerm *= rescaleRange(cloudOcclusion,0,1,0,shadowTerm);
@@ -11,11 +11,24 @@ out vec2 v_uv0;
 out vec4 v_vertexProjPos;
 
 uniform mat4 modelMatrix;
-uniform mat4 viewProjMatrix;
+
+// Per-frame constants, uploaded once per frame by the FrameConstantsNode. Must match the declaration documented there.
+layout(std140) uniform FrameConstants {
+    mat4 projectionMatrix;
+    mat4 invProjectionMatrix;
+    mat4 viewProjectionMatrix;
+    mat4 invViewProjectionMatrix;
+    mat4 prevViewProjectionMatrix;
+    vec4 sunDirection;
+    float zNear;
+    float zFar;
+    float time;
+    float daylight;
+} frame;
 
 void main() {
 #if defined (FEATURE_LIGHT_POINT)
-    v_vertexProjPos = (viewProjMatrix * modelMatrix) * vec4(in_vert, 1.0);
+    v_vertexProjPos = (frame.viewProjectionMatrix * modelMatrix) * vec4(in_vert, 1.0);
 #elif defined (FEATURE_LIGHT_DIRECTIONAL)
     v_vertexProjPos = vec4(in_vert, 1.0);
 #endif
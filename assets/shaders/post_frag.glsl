@@ -4,6 +4,20 @@
 
 in vec2 v_uv0;
 
+// Per-frame constants, uploaded once per frame by the FrameConstantsNode. Must match the declaration documented there.
+layout(std140) uniform FrameConstants {
+    mat4 projectionMatrix;
+    mat4 invProjectionMatrix;
+    mat4 viewProjectionMatrix;
+    mat4 invViewProjectionMatrix;
+    mat4 prevViewProjectionMatrix;
+    vec4 sunDirection;
+    float zNear;
+    float zFar;
+    float time;
+    float daylight;
+} frame;
+
 uniform sampler2D texScene;
 uniform sampler2D texDepth;
 
@@ -24,11 +38,6 @@ uniform float noiseOffset;
 uniform float grainIntensity;
 #endif
 
-#ifdef MOTION_BLUR
-uniform mat4 invViewProjMatrix;
-uniform mat4 prevViewProjMatrix;
-#endif
-
 layout(location = 0) out vec4 outColor;
 
 void main() {
@@ -66,9 +75,9 @@ void main() {
     vec4 screenSpaceNorm = vec4(v_uv0.x, v_uv0.y, currentDepth, 1.0);
     vec4 screenSpacePos = screenSpaceNorm * vec4(2.0, 2.0, 1.0, 1.0) - vec4(1.0, 1.0, 0.0, 0.0);
 
-    vec4 worldSpacePos = invViewProjMatrix * screenSpacePos;
+    vec4 worldSpacePos = frame.invViewProjectionMatrix * screenSpacePos;
     vec4 normWorldSpacePos = worldSpacePos / worldSpacePos.w;
-    vec4 prevScreenSpacePos = prevViewProjMatrix * normWorldSpacePos;
+    vec4 prevScreenSpacePos = frame.prevViewProjectionMatrix * normWorldSpacePos;
     prevScreenSpacePos /= prevScreenSpacePos.w;
 
     vec2 velocity = (screenSpacePos.xy - prevScreenSpacePos.xy) / 128.0;
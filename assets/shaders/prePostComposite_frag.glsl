@@ -4,6 +4,20 @@
 
 in vec2 v_uv0;
 
+// Per-frame constants, uploaded once per frame by the FrameConstantsNode. Must match the declaration documented there.
+layout(std140) uniform FrameConstants {
+    mat4 projectionMatrix;
+    mat4 invProjectionMatrix;
+    mat4 viewProjectionMatrix;
+    mat4 invViewProjectionMatrix;
+    mat4 prevViewProjectionMatrix;
+    vec4 sunDirection;
+    float zNear;
+    float zFar;
+    float time;
+    float daylight;
+} frame;
+
 uniform sampler2D texSceneOpaque;
 uniform sampler2D texSceneOpaqueDepth;
 uniform sampler2D texSceneOpaqueNormals;
@@ -12,9 +26,6 @@ uniform sampler2D texSceneReflectiveRefractive;
 
 #if defined (LOCAL_REFLECTIONS)
 uniform sampler2D texSceneReflectiveRefractiveNormals;
-
-uniform mat4 invProjMatrix;
-uniform mat4 projMatrix;
 #endif
 
 #ifdef INSCATTERING
@@ -41,7 +52,6 @@ uniform float outlineThickness;
 #ifdef VOLUMETRIC_FOG
 #define VOLUMETRIC_FOG_COLOR 1.0, 1.0, 1.0
 
-uniform mat4 invViewProjMatrix;
 uniform vec3 volumetricFogSettings;
 #define volFogDensityAtViewer volumetricFogSettings.x
 #define volFogGlobalDensity volumetricFogSettings.y
@@ -63,11 +73,11 @@ void main() {
 
 #if defined VOLUMETRIC_FOG
     // TODO: As costly as in the deferred light geometry pass - frustum ray method would be great here
-    vec3 fragmentPositionInCameraSpace = reconstructViewPos(depthOpaque, v_uv0.xy, invViewProjMatrix);
+    vec3 fragmentPositionInCameraSpace = reconstructViewPos(depthOpaque, v_uv0.xy, frame.invViewProjectionMatrix);
 #endif
 
 #if defined (LOCAL_REFLECTIONS)
-    vec3 worldPositionViewSpace = reconstructViewPos(depthOpaque, v_uv0.xy, invProjMatrix);
+    vec3 worldPositionViewSpace = reconstructViewPos(depthOpaque, v_uv0.xy, frame.invProjectionMatrix);
 
     vec4 transparentNormalColorValue = texture(texSceneReflectiveRefractiveNormals, v_uv0.xy).xyzw;
     vec3 reflectionNormal = transparentNormalColorValue.xyz * 2.0 - 1.0;
@@ -88,7 +98,7 @@ void main() {
     for (int i=0; i<SAMPLES_LOCAL_REFLECTION; ++i) {
         viewSpaceRayPosition += reflectionDirection * SAMPLE_STEP_SIZE;
 
-        vec4 screenSpaceRayPosition = projMatrix * vec4(viewSpaceRayPosition.x, viewSpaceRayPosition.y, viewSpaceRayPosition.z, 1.0);
+        vec4 screenSpaceRayPosition = frame.projectionMatrix * vec4(viewSpaceRayPosition.x, viewSpaceRayPosition.y, viewSpaceRayPosition.z, 1.0);
         screenSpaceRayPosition.xyz /= screenSpaceRayPosition.w;
 
         // Nahh... We don't want to touch anything outside of the screen
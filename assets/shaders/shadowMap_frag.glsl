@@ -2,5 +2,6 @@
 // Copyright 2021 The Terasology Foundation
 // SPDX-License-Identifier: Apache-2.0
 
+// Only depth is written: there are no outputs, nor anything that could prevent early depth testing.
 void main() {
 }
@@ -4,12 +4,10 @@
 
 layout (location = 0) in vec3 in_vert;
 
-uniform mat4 modelViewMatrix;
-uniform mat4 projectionMatrix;
-
-//out vec4 v_pos;
+// The chunks are only translated relative to the shadow map camera, hence a single matrix for the whole pass.
+uniform mat4 viewProjectionMatrix;
+uniform vec3 chunkOffset;
 
 void main() {
-	gl_Position = projectionMatrix * modelViewMatrix *  vec4(in_vert, 1.0);
-
+	gl_Position = viewProjectionMatrix * vec4(in_vert + chunkOffset, 1.0);
 }
@@ -0,0 +1,41 @@
+#version 330 core
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+in vec2 v_uv0;
+
+// The shadow map depth in the first pass, the moments written by the first pass in the second one.
+uniform sampler2D tex;
+uniform int isConvertingDepth;
+
+uniform vec2 texelStep;
+uniform float exponent;
+
+const float WEIGHTS[5] = float[5](0.0625, 0.25, 0.375, 0.25, 0.0625);
+
+layout(location = 0) out vec4 outMoments;
+
+// Exponentially warped depth, with positive and negative exponents, together with the squares.
+vec4 convertDepth(vec2 uv) {
+    float depth = 2.0 * texture(tex, uv).r - 1.0;
+    vec2 warpedDepth = vec2(exp(exponent * depth), -exp(-exponent * depth));
+    return vec4(warpedDepth.x, warpedDepth.x * warpedDepth.x, warpedDepth.y, warpedDepth.y * warpedDepth.y);
+}
+
+vec4 getMoments(vec2 uv) {
+    if (isConvertingDepth != 0) {
+        // The moments are half the resolution of the shadow map: average those of the 2x2 texels covered.
+        vec2 halfTexel = 0.5 / vec2(textureSize(tex, 0));
+        return 0.25 * (convertDepth(uv + vec2(-halfTexel.x, -halfTexel.y)) + convertDepth(uv + vec2(halfTexel.x, -halfTexel.y))
+                + convertDepth(uv + vec2(-halfTexel.x, halfTexel.y)) + convertDepth(uv + vec2(halfTexel.x, halfTexel.y)));
+    }
+    return texture(tex, uv);
+}
+
+void main() {
+    vec4 moments = vec4(0.0);
+    for (int i = 0; i < 5; i++) {
+        moments += WEIGHTS[i] * getMoments(v_uv0 + float(i - 2) * texelStep);
+    }
+    outMoments = moments;
+}
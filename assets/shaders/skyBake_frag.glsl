@@ -0,0 +1,68 @@
+#version 330 core
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+in vec4 v_position;
+in vec2 v_uv0;
+
+uniform sampler2D texSky180;
+uniform sampler2D texSky90;
+
+uniform vec3 sunDirection;
+uniform float daylight;
+uniform float turbidity;
+uniform float colorExp;
+uniform vec3 zenith;
+
+uniform vec2 skySettings;
+#define skyDaylightBrightness skySettings.x
+#define skyNightBrightness skySettings.y
+
+layout(location = 0) out vec4 outColor;
+
+vec3 allWeather(float t, float cosTheta, float cosGamma) {
+    float   gamma      = acos ( cosGamma );
+    float   cosGammaSq = cosGamma * cosGamma;
+    float   aY =  0.17872 * t - 1.46303;
+    float   bY = -0.35540 * t + 0.42749;
+    float   cY = -0.02266 * t + 5.32505;
+    float   dY =  0.12064 * t - 2.57705;
+    float   eY = -0.06696 * t + 0.37027;
+    float   ax = -0.01925 * t - 0.25922;
+    float   bx = -0.06651 * t + 0.00081;
+    float   cx = -0.00041 * t + 0.21247;
+    float   dx = -0.06409 * t - 0.89887;
+    float   ex = -0.00325 * t + 0.04517;
+    float   ay = -0.01669 * t - 0.26078;
+    float   by = -0.09495 * t + 0.00921;
+    float   cy = -0.00792 * t + 0.21023;
+    float   dy = -0.04405 * t - 1.65369;
+    float   ey = -0.01092 * t + 0.05291;
+
+    return vec3 ((1.0 + aY * exp(bY/cosTheta)) * (1.0 + cY * exp(dY * gamma) + eY*cosGammaSq),
+                  (1.0 + ax * exp(bx/cosTheta)) * (1.0 + cx * exp(dx * gamma) + ex*cosGammaSq),
+                  (1.0 + ay * exp(by/cosTheta)) * (1.0 + cy * exp(dy * gamma) + ey*cosGammaSq));
+}
+
+vec3 allWeatherSky(float t, float cosTheta, float cosGamma, float cosThetaSun) {
+  vec3	clrYxy = zenith * allWeather(t, cosTheta, cosGamma) / allWeather (t, 1.0, cosThetaSun);
+  clrYxy.x *= smoothstep ( 0.0, 0.1, cosThetaSun );
+
+  return clrYxy;
+}
+
+// Renders one face of the sky cubemap, see the SkyCubemapNode.
+void main () {
+    vec3 v = normalize(v_position.xyz);
+    vec3 l = normalize(sunDirection);
+
+    vec3 colorYxy = allWeatherSky(turbidity, max(v.y, 0.0) + 0.05, dot(l, v), l.y);
+
+    vec4 cloudsColor = texture(texSky180, v_uv0.xy);
+    vec4 cloudsColorNight = texture(texSky90, v_uv0.xy);
+
+    vec3 skyColor = skyDaylightBrightness * daylight * cloudsColor.rgb + (1.0 - daylight) * skyNightBrightness * cloudsColorNight.rgb;
+    skyColor *= mix(convertColorYxy(colorYxy, colorExp).rgb, vec3(1.0, 1.0, 1.0), 1.0 - daylight);
+
+    outColor = vec4(skyColor, 1.0 - cloudsColor.r);
+}
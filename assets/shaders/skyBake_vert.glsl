@@ -0,0 +1,18 @@
+#version 330 core
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+layout (location = 0) in vec3 in_vert;
+layout (location = 2) in vec2 in_uv0;
+
+out vec4 v_position;
+out vec2 v_uv0;
+
+uniform mat4 projectionMatrix;
+uniform mat4 modelViewMatrix;
+
+void main(void) {
+    v_position      = vec4(in_vert, 1.0);
+    v_uv0           = in_uv0;
+    gl_Position     = (projectionMatrix * modelViewMatrix) * v_position;
+}
@@ -3,24 +3,28 @@
 // SPDX-License-Identifier: Apache-2.0
 
 in vec4 v_position;
-in vec2 v_uv0;
-in vec3 v_colorYxy;
-in vec3 v_skyVec;
 
-uniform sampler2D texSky180;
-uniform sampler2D texSky90;
-
-uniform float colorExp;
-uniform vec3 zenith;
-
-uniform vec4 skySettings;
-#define sunExponent skySettings.x
-#define moonExponent skySettings.y
-
-#define skyDaylightBrightness skySettings.z
-#define skyNightBrightness skySettings.w
-
-const vec4 eyePos = vec4(0.0, 0.0, 0.0, 1.0);
+// Per-frame constants, uploaded once per frame by the FrameConstantsNode. Must match the declaration documented there.
+layout(std140) uniform FrameConstants {
+    mat4 projectionMatrix;
+    mat4 invProjectionMatrix;
+    mat4 viewProjectionMatrix;
+    mat4 invViewProjectionMatrix;
+    mat4 prevViewProjectionMatrix;
+    vec4 sunDirection;
+    float zNear;
+    float zFar;
+    float time;
+    float daylight;
+} frame;
+
+// Rendered by the SkyCubemapNode: the sky without the highlights, and in the alpha channel the amount of sky
+// not covered by clouds.
+uniform samplerCube skyCubemap;
+
+uniform vec2 highlightSettings;
+#define sunExponent highlightSettings.x
+#define moonExponent highlightSettings.y
 
 #define HIGHLIGHT_BLEND_START 0.1
 #define SUN_HIGHLIGHT_INTENSITY_FACTOR 1.0
@@ -30,7 +34,7 @@ layout(location = 0) out vec4 outColor;
 
 void main () {
     vec3 v = normalize(v_position.xyz);
-    vec3 l = normalize(sunVec.xyz);
+    vec3 l = normalize(frame.sunDirection.xyz);
 
     float lDotV = dot(l, v);
     float negLDotV = dot(-l, v);
@@ -51,17 +55,10 @@ void main () {
        moonHighlight *= 1.0 - (HIGHLIGHT_BLEND_START + l.y) / HIGHLIGHT_BLEND_START;
     }
 
-    vec4 skyColor = vec4(0.0, 0.0, 0.0, 1.0);
-
-    /* PROCEDURAL SKY COLOR */
-    vec4 cloudsColor = texture(texSky180, v_uv0.xy);
-    vec4 cloudsColorNight = texture(texSky90, v_uv0.xy);
-
-    /* DAY AND NIGHT TEXTURES */
-    skyColor.rgb = skyDaylightBrightness * daylight * cloudsColor.rgb + (1.0 - daylight) * skyNightBrightness * cloudsColorNight.rgb;
-    skyColor.rgb *= mix(convertColorYxy(v_colorYxy, colorExp).rgb, vec3(1.0, 1.0, 1.0), 1.0 - daylight);
+    vec4 skyColor = texture(skyCubemap, v);
 
-    skyColor.rgb += vec3((1.0 - cloudsColor.r) * sunHighlight + (1.0 - cloudsColor.r) * moonHighlight);
+    skyColor.rgb += vec3(skyColor.a * sunHighlight + skyColor.a * moonHighlight);
+    skyColor.a = 1.0;
 
     outColor.rgba = skyColor.rgba;
 }
@@ -15,8 +15,19 @@ uniform sampler2D texNormals;
 uniform sampler2D texNoise;
 uniform sampler2D texDepth;
 
-uniform mat4 invProjMatrix;
-uniform mat4 projMatrix;
+// Per-frame constants, uploaded once per frame by the FrameConstantsNode. Must match the declaration documented there.
+layout(std140) uniform FrameConstants {
+    mat4 projectionMatrix;
+    mat4 invProjectionMatrix;
+    mat4 viewProjectionMatrix;
+    mat4 invViewProjectionMatrix;
+    mat4 prevViewProjectionMatrix;
+    vec4 sunDirection;
+    float zNear;
+    float zFar;
+    float time;
+    float daylight;
+} frame;
 
 uniform vec3 ssaoSamples[SSAO_KERNEL_ELEMENTS];
 
@@ -36,7 +47,7 @@ void main() {
     vec3 randomVec = texture(texNoise, v_uv0.xy * noiseScale).xyz * 2.0 - 1.0;
 
     // TODO: This is costly... See below
-    vec3 viewSpacePos = reconstructViewPos(currentDepth, v_uv0.xy, invProjMatrix);
+    vec3 viewSpacePos = reconstructViewPos(currentDepth, v_uv0.xy, frame.invProjectionMatrix);
 
     vec3 tangent = normalize(randomVec - normal * dot(randomVec, normal));
     vec3 bitangent = cross(normal, tangent);
@@ -54,12 +65,12 @@ void main() {
         samplePosition = (tbn * ssaoSamples[i]) * ssaoRadius + viewSpacePos;
 
         offset = vec4(samplePosition.x, samplePosition.y, samplePosition.z, 1.0);
-        offset = projMatrix * offset;
+        offset = frame.projectionMatrix * offset;
         offset.xy /= offset.w;
         offset.xy = offset.xy * vec2(0.5) + vec2(0.5);
 
         // TODO: Holy... frustum ray and linearized depth - please!
-        sampleDepth = reconstructViewPos(texture(texDepth, offset.xy).r * 2.0 - 1.0, v_uv0.xy, invProjMatrix).z;
+        sampleDepth = reconstructViewPos(texture(texDepth, offset.xy).r * 2.0 - 1.0, v_uv0.xy, frame.invProjectionMatrix).z;
         float depthDifference = abs(viewSpacePos.z - sampleDepth);
 
         float rangeCheck;
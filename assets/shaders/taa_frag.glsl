@@ -0,0 +1,56 @@
+#version 330 core
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+in vec2 v_uv0;
+
+uniform sampler2D texScene;
+uniform sampler2D texDepth;
+uniform sampler2D texHistory;
+
+// Both matrices are free of the sub-pixel jitter applied to the camera.
+uniform mat4 invViewProjMatrix;
+uniform mat4 prevViewProjMatrix;
+// Camera position in the current frame minus camera position in the previous frame.
+uniform vec3 cameraMotion;
+
+uniform vec2 jitterOffset;
+uniform vec2 sceneTexelSize;
+uniform float historyFeedback;
+
+layout(location = 0) out vec4 outColor;
+
+void main() {
+    // Sampling the scene where the jitter has moved the content of this pixel keeps the accumulated image stable.
+    vec2 sceneUv = v_uv0 + jitterOffset;
+    vec4 currentColor = texture(texScene, sceneUv);
+
+    // Neighborhood clamping: the history is only trusted within the color range of the current 3x3 neighborhood,
+    // which rejects most of the ghosting caused by disocclusions and by changes in lighting.
+    vec4 neighborhoodMin = currentColor;
+    vec4 neighborhoodMax = currentColor;
+    for (int x = -1; x <= 1; ++x) {
+        for (int y = -1; y <= 1; ++y) {
+            vec4 neighbor = texture(texScene, sceneUv + vec2(x, y) * sceneTexelSize);
+            neighborhoodMin = min(neighborhoodMin, neighbor);
+            neighborhoodMax = max(neighborhoodMax, neighbor);
+        }
+    }
+
+    // History reprojection: the camera-relative position of this pixel is moved into the previous frame's
+    // camera space and projected with the previous frame's view-projection matrix.
+    float depth = texture(texDepth, sceneUv).x * 2.0 - 1.0;
+    vec4 position = invViewProjMatrix * vec4(v_uv0 * 2.0 - 1.0, depth, 1.0);
+    position /= position.w;
+    vec4 prevPosition = prevViewProjMatrix * vec4(position.xyz + cameraMotion, 1.0);
+    vec2 historyUv = (prevPosition.xy / prevPosition.w) * 0.5 + 0.5;
+
+    float feedback = historyFeedback;
+    if (any(lessThan(historyUv, vec2(0.0))) || any(greaterThan(historyUv, vec2(1.0)))) {
+        feedback = 0.0; // the pixel was off-screen last frame: no history is available for it
+    }
+
+    vec4 historyColor = clamp(texture(texHistory, historyUv), neighborhoodMin, neighborhoodMax);
+
+    outColor = mix(currentColor, historyColor, feedback);
+}
@@ -0,0 +1,37 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+import org.terasology.corerendering.rendering.ChunkLodSelector;
+
+/**
+ * A single occurrence of an activity, recorded during a FrameCapture.
+ *
+ * CPU times are System.nanoTime() values. GPU times are OpenGL timestamps, only available a few frames
+ * after the activity took place, and are left unset if the GPU results could not be read back.
+ */
+class CapturedActivity {
+    final String name;
+    final int frame;
+    final long cpuStartNanoseconds;
+    long cpuEndNanoseconds;
+    long gpuStartNanoseconds;
+    long gpuEndNanoseconds;
+    boolean hasGpuTimes;
+    int triangleCount;
+    final int[] lodTriangleCounts = new int[ChunkLodSelector.LEVEL_COUNT];
+    int uniformCallsIssued;
+    int uniformCallsSkipped;
+
+    CapturedActivity(String name, int frame, long cpuStartNanoseconds) {
+        this.name = name;
+        this.frame = frame;
+        this.cpuStartNanoseconds = cpuStartNanoseconds;
+    }
+
+    void setGpuTimes(long startNanoseconds, long endNanoseconds) {
+        gpuStartNanoseconds = startNanoseconds;
+        gpuEndNanoseconds = endNanoseconds;
+        hasGpuTimes = true;
+    }
+}
@@ -0,0 +1,238 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+import com.google.gson.stream.JsonWriter;
+import org.terasology.corerendering.rendering.ChunkLodSelector;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+import static org.lwjgl.opengl.GL11.GL_RENDERER;
+import static org.lwjgl.opengl.GL11.GL_VENDOR;
+import static org.lwjgl.opengl.GL11.GL_VERSION;
+import static org.lwjgl.opengl.GL11.glGetString;
+import static org.lwjgl.opengl.GL32.glGetInteger64;
+import static org.lwjgl.opengl.GL33.GL_TIMESTAMP;
+
+/**
+ * Records the activities taking place over a given number of frames and writes them to a file, either as they are
+ * or summarized. See FrameCaptureFormat.
+ *
+ * In the Chrome trace-event format, which can be opened in chrome://tracing or https://ui.perfetto.dev, the CPU
+ * and GPU timings of each activity end up on two separate tracks. GPU timestamps are brought onto the CPU timeline
+ * by means of the offset between the two clocks at the beginning of the capture.
+ *
+ * The summary provides, for each activity, the average and 95th percentile of its CPU and GPU timings and
+ * the average per frame of its counts, together with the OpenGL implementation the capture was made with.
+ */
+class FrameCapture {
+    private static final int PROCESS_ID = 1;
+    private static final int CPU_THREAD_ID = 1;
+    private static final int GPU_THREAD_ID = 2;
+
+    private final int frameCount;
+    private final Path file;
+    private final FrameCaptureFormat format;
+    private final long cpuOriginNanoseconds;
+    private final long gpuToCpuNanoseconds;
+    private final List<CapturedActivity> activities = new ArrayList<>();
+
+    private int frame;
+
+    /**
+     * Must be called from the thread owning the OpenGL context.
+     */
+    FrameCapture(int frameCount, Path file, FrameCaptureFormat format) {
+        this.frameCount = frameCount;
+        this.file = file;
+        this.format = format;
+
+        cpuOriginNanoseconds = System.nanoTime();
+        gpuToCpuNanoseconds = cpuOriginNanoseconds - glGetInteger64(GL_TIMESTAMP);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    int getFrame() {
+        return frame;
+    }
+
+    void nextFrame() {
+        frame++;
+    }
+
+    boolean isRecording() {
+        return frame < frameCount;
+    }
+
+    /**
+     * Once the requested frames have been recorded, a few more frames are needed for the GPU timings
+     * of the last activities to be read back. See GpuTimer.
+     */
+    boolean isComplete() {
+        return frame >= frameCount + GpuTimer.QUERY_RING_SIZE;
+    }
+
+    CapturedActivity startActivity(String activityName) {
+        CapturedActivity activity = new CapturedActivity(activityName, frame, System.nanoTime());
+        activities.add(activity);
+        return activity;
+    }
+
+    /**
+     * @param stateChangeCounter provides the number of state changes requested by the node behind a given activity name.
+     */
+    void write(ToIntFunction<String> stateChangeCounter) throws IOException {
+        Files.createDirectories(file.getParent());
+
+        try (Writer fileWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             JsonWriter writer = new JsonWriter(fileWriter)) {
+            if (format == FrameCaptureFormat.SUMMARY) {
+                writer.setIndent("  ");
+                writeSummary(writer, stateChangeCounter);
+            } else {
+                writeTrace(writer, stateChangeCounter);
+            }
+        }
+    }
+
+    private void writeTrace(JsonWriter writer, ToIntFunction<String> stateChangeCounter) throws IOException {
+        Map<String, Integer> stateChangeCounts = new HashMap<>();
+
+        writer.beginObject();
+        writer.name("displayTimeUnit").value("ms");
+        writer.name("traceEvents").beginArray();
+
+        writeThreadName(writer, CPU_THREAD_ID, "CPU");
+        writeThreadName(writer, GPU_THREAD_ID, "GPU");
+
+        for (CapturedActivity activity : activities) {
+            int stateChangeCount = stateChangeCounts.computeIfAbsent(activity.name, stateChangeCounter::applyAsInt);
+
+            writeEventStart(writer, activity.name, CPU_THREAD_ID,
+                    activity.cpuStartNanoseconds, activity.cpuEndNanoseconds);
+            writer.name("args").beginObject();
+            writer.name("frame").value(activity.frame);
+            writer.name("triangles").value(activity.triangleCount);
+            writer.name("trianglesPerLod").beginArray();
+            for (int lodTriangleCount : activity.lodTriangleCounts) {
+                writer.value(lodTriangleCount);
+            }
+            writer.endArray();
+            writer.name("stateChanges").value(stateChangeCount);
+            writer.name("uniformCallsIssued").value(activity.uniformCallsIssued);
+            writer.name("uniformCallsSkipped").value(activity.uniformCallsSkipped);
+            writer.endObject();
+            writer.endObject();
+
+            if (activity.hasGpuTimes) {
+                writeEventStart(writer, activity.name, GPU_THREAD_ID,
+                        activity.gpuStartNanoseconds + gpuToCpuNanoseconds, activity.gpuEndNanoseconds + gpuToCpuNanoseconds);
+                writer.name("args").beginObject();
+                writer.name("frame").value(activity.frame);
+                writer.endObject();
+                writer.endObject();
+            }
+        }
+
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private void writeSummary(JsonWriter writer, ToIntFunction<String> stateChangeCounter) throws IOException {
+        Map<String, List<CapturedActivity>> activitiesByName = new LinkedHashMap<>();
+        for (CapturedActivity activity : activities) {
+            activitiesByName.computeIfAbsent(activity.name, name -> new ArrayList<>()).add(activity);
+        }
+
+        writer.beginObject();
+        writer.name("frames").value(frameCount);
+        writer.name("glVendor").value(glGetString(GL_VENDOR));
+        writer.name("glRenderer").value(glGetString(GL_RENDERER));
+        writer.name("glVersion").value(glGetString(GL_VERSION));
+        writer.name("activities").beginArray();
+
+        for (Map.Entry<String, List<CapturedActivity>> entry : activitiesByName.entrySet()) {
+            List<CapturedActivity> occurrences = entry.getValue();
+            TimingStatistics cpuTimings = new TimingStatistics(occurrences.size());
+            TimingStatistics gpuTimings = new TimingStatistics(occurrences.size());
+            long triangleCount = 0;
+            long[] lodTriangleCounts = new long[ChunkLodSelector.LEVEL_COUNT];
+            long uniformCallsIssued = 0;
+            long uniformCallsSkipped = 0;
+
+            for (CapturedActivity activity : occurrences) {
+                cpuTimings.addSample((activity.cpuEndNanoseconds - activity.cpuStartNanoseconds) / 1_000_000.0f);
+                if (activity.hasGpuTimes) {
+                    gpuTimings.addSample((activity.gpuEndNanoseconds - activity.gpuStartNanoseconds) / 1_000_000.0f);
+                }
+                triangleCount += activity.triangleCount;
+                for (int lodLevel = 0; lodLevel < lodTriangleCounts.length; lodLevel++) {
+                    lodTriangleCounts[lodLevel] += activity.lodTriangleCounts[lodLevel];
+                }
+                uniformCallsIssued += activity.uniformCallsIssued;
+                uniformCallsSkipped += activity.uniformCallsSkipped;
+            }
+
+            writer.beginObject();
+            writer.name("name").value(entry.getKey());
+            writer.name("occurrences").value(occurrences.size());
+            writer.name("cpuMeanMs").value(cpuTimings.getMean());
+            writer.name("cpuP95Ms").value(cpuTimings.getPercentile(95));
+            writer.name("gpuMeanMs").value(gpuTimings.getMean());
+            writer.name("gpuP95Ms").value(gpuTimings.getPercentile(95));
+            writer.name("trianglesPerFrame").value((double) triangleCount / frameCount);
+            writer.name("trianglesPerFramePerLod").beginArray();
+            for (long lodTriangleCount : lodTriangleCounts) {
+                writer.value((double) lodTriangleCount / frameCount);
+            }
+            writer.endArray();
+            writer.name("uniformCallsIssuedPerFrame").value((double) uniformCallsIssued / frameCount);
+            writer.name("uniformCallsSkippedPerFrame").value((double) uniformCallsSkipped / frameCount);
+            writer.name("stateChanges").value(stateChangeCounter.applyAsInt(entry.getKey()));
+            writer.endObject();
+        }
+
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private void writeThreadName(JsonWriter writer, int threadId, String threadName) throws IOException {
+        writer.beginObject();
+        writer.name("name").value("thread_name");
+        writer.name("ph").value("M");
+        writer.name("pid").value(PROCESS_ID);
+        writer.name("tid").value(threadId);
+        writer.name("args").beginObject();
+        writer.name("name").value(threadName);
+        writer.endObject();
+        writer.endObject();
+    }
+
+    /**
+     * Writes the fields of a "complete" event, leaving the event object open for its arguments to be added.
+     */
+    private void writeEventStart(JsonWriter writer, String name, int threadId, long startNanoseconds, long endNanoseconds)
+            throws IOException {
+        writer.beginObject();
+        writer.name("name").value(name);
+        writer.name("ph").value("X");
+        writer.name("pid").value(PROCESS_ID);
+        writer.name("tid").value(threadId);
+        // The trace-event format expects microseconds.
+        writer.name("ts").value((startNanoseconds - cpuOriginNanoseconds) / 1000.0);
+        writer.name("dur").value((endNanoseconds - startNanoseconds) / 1000.0);
+    }
+}
@@ -0,0 +1,17 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+/**
+ * The formats a frame capture can be written in. See RenderingProfiler.startFrameCapture().
+ */
+public enum FrameCaptureFormat {
+    /**
+     * Every occurrence of every activity, in the Chrome trace-event format.
+     */
+    TRACE,
+    /**
+     * Statistics per activity over all the captured frames, in plain JSON, meant to be compared between builds.
+     */
+    SUMMARY
+}
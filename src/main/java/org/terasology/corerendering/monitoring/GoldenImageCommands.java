@@ -0,0 +1,125 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+import org.terasology.corerendering.rendering.CoreRenderingModule;
+import org.terasology.corerendering.rendering.dag.nodes.AmbientOcclusionNode;
+import org.terasology.corerendering.rendering.dag.nodes.FinalPostProcessingNode;
+import org.terasology.corerendering.rendering.dag.nodes.TemporalAntiAliasingNode;
+import org.terasology.engine.core.PathManager;
+import org.terasology.engine.core.module.rendering.RenderingModuleRegistry;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.logic.console.commandSystem.annotations.Command;
+import org.terasology.engine.logic.console.commandSystem.annotations.CommandParam;
+import org.terasology.engine.logic.permission.PermissionManager;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.rendering.opengl.FBO;
+import org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Console commands saving the content of selected FBOs as reference images, and comparing the current content
+ * of those FBOs against the references. They are meant to check that a change to the rendering, i.e. an
+ * optimization, doesn't alter the image: save the references for a given scene, apply the change, set up
+ * the same scene again and compare.
+ *
+ * A scene should be set up so that it renders identically every frame, i.e. with time stopped, the camera
+ * standing still and temporal anti-aliasing disabled or settled.
+ */
+@RegisterSystem(RegisterMode.CLIENT)
+public class GoldenImageCommands extends BaseComponentSystem {
+    private static final String GOLDEN_IMAGES_DIRECTORY = "goldenImages";
+    private static final String IMAGE_FORMAT = "png";
+    private static final float DEFAULT_TOLERANCE = 0.02f;
+
+    @In
+    private RenderingModuleRegistry renderingModuleRegistry;
+
+    @Command(shortDescription = "Saves selected FBOs as the reference images of a scene",
+            helpText = "Saves the gBuffer, SSAO, final and TAA buffers as PNG files in the goldenImages/<scene> folder, "
+                    + "overwriting any previous reference for the same scene. See also: compareGoldenImages",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String saveGoldenImages(@CommandParam("scene") String scene) throws IOException {
+        Path sceneDirectory = getSceneDirectory(scene);
+        Files.createDirectories(sceneDirectory);
+
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, FBO> entry : getFbos().entrySet()) {
+            if (entry.getValue() == null) {
+                report.append(String.format("%-10s not available%n", entry.getKey()));
+                continue;
+            }
+
+            Path file = sceneDirectory.resolve(entry.getKey() + "." + IMAGE_FORMAT);
+            ImageIO.write(ImageComparison.readColorBuffer(entry.getValue()), IMAGE_FORMAT, file.toFile());
+            report.append(String.format("%-10s saved to %s%n", entry.getKey(), file));
+        }
+        return report.toString();
+    }
+
+    @Command(shortDescription = "Compares selected FBOs against the reference images of a scene",
+            helpText = "Compares the gBuffer, SSAO, final and TAA buffers against the images saved with saveGoldenImages. "
+                    + "A pixel differs from its reference if its perceived color distance, in the [0, 1] range, exceeds "
+                    + "the tolerance, 0.02 by default. A buffer fails if more than 0.1% of its pixels differ",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String compareGoldenImages(@CommandParam("scene") String scene,
+                                      @CommandParam(value = "tolerance", required = false) Float tolerance) throws IOException {
+        float pixelTolerance = tolerance != null ? tolerance : DEFAULT_TOLERANCE;
+        Path sceneDirectory = getSceneDirectory(scene);
+
+        StringBuilder report = new StringBuilder(String.format("%-10s %6s %12s %12s %10s%n",
+                "buffer", "result", "maxDistance", "differing%", "psnr"));
+        boolean isMatching = true;
+        for (Map.Entry<String, FBO> entry : getFbos().entrySet()) {
+            Path file = sceneDirectory.resolve(entry.getKey() + "." + IMAGE_FORMAT);
+            if (entry.getValue() == null || !Files.exists(file)) {
+                report.append(String.format("%-10s %6s%n", entry.getKey(), "SKIP"));
+                continue;
+            }
+
+            BufferedImage reference = ImageIO.read(file.toFile());
+            ImageComparison comparison = ImageComparison.compare(reference, ImageComparison.readColorBuffer(entry.getValue()),
+                    pixelTolerance);
+            isMatching &= comparison.isMatching();
+
+            if (comparison.hasSameSize) {
+                report.append(String.format("%-10s %6s %12.4f %12.3f %10.2f%n", entry.getKey(),
+                        comparison.isMatching() ? "PASS" : "FAIL", comparison.maxDistance,
+                        comparison.differingPixels * 100.0f, comparison.psnr));
+            } else {
+                report.append(String.format("%-10s %6s size differs from the reference%n", entry.getKey(), "FAIL"));
+            }
+        }
+        report.append(isMatching ? "All buffers match the references" : "Some buffers differ from the references");
+        return report.toString();
+    }
+
+    private Path getSceneDirectory(String scene) {
+        return PathManager.getInstance().getHomePath().resolve(GOLDEN_IMAGES_DIRECTORY).resolve(scene);
+    }
+
+    /**
+     * @return the FBOs compared against reference images, by name. An FBO is null if the nodes providing it are absent.
+     */
+    private Map<String, FBO> getFbos() {
+        CoreRenderingModule coreRendering = (CoreRenderingModule) renderingModuleRegistry
+                .getModuleRenderingByClass(CoreRenderingModule.class);
+        DisplayResolutionDependentFbo displayResolutionDependentFbo = coreRendering.getDisplayResolutionDependentFbo();
+
+        Map<String, FBO> fbos = new LinkedHashMap<>();
+        fbos.put("gBuffer", displayResolutionDependentFbo.getGBufferPair().getLastUpdatedFbo());
+        fbos.put("ssao", displayResolutionDependentFbo.get(AmbientOcclusionNode.SSAO_FBO_URI));
+        fbos.put("final", displayResolutionDependentFbo.get(FinalPostProcessingNode.POST_FBO_URI));
+        fbos.put("taa", displayResolutionDependentFbo.get(TemporalAntiAliasingNode.TAA_FBO_URI));
+        return fbos;
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+import static org.lwjgl.opengl.GL11.GL_TRUE;
+import static org.lwjgl.opengl.GL15.GL_QUERY_RESULT;
+import static org.lwjgl.opengl.GL15.GL_QUERY_RESULT_AVAILABLE;
+import static org.lwjgl.opengl.GL15.glDeleteQueries;
+import static org.lwjgl.opengl.GL15.glGenQueries;
+import static org.lwjgl.opengl.GL15.glGetQueryObjecti;
+import static org.lwjgl.opengl.GL33.GL_TIMESTAMP;
+import static org.lwjgl.opengl.GL33.glGetQueryObjecti64;
+import static org.lwjgl.opengl.GL33.glQueryCounter;
+
+/**
+ * Measures the time the GPU takes to execute the commands issued between begin() and end().
+ *
+ * Timestamp queries are used rather than GL_TIME_ELAPSED ones, as the latter can't be nested.
+ * Each measurement is only read back when its queries are about to be reused, a few frames later:
+ * by then the GPU has normally caught up, so reading a result never stalls the pipeline. If a result
+ * is still unavailable at that point the sample is dropped instead.
+ */
+class GpuTimer {
+    static final int QUERY_RING_SIZE = 3;
+
+    private final int[] startQueries = new int[QUERY_RING_SIZE];
+    private final int[] endQueries = new int[QUERY_RING_SIZE];
+    private final boolean[] isPending = new boolean[QUERY_RING_SIZE];
+    private final CapturedActivity[] capturedActivities = new CapturedActivity[QUERY_RING_SIZE];
+    private final TimingStatistics statistics;
+
+    private int currentSlot;
+
+    GpuTimer(int sampleCount) {
+        for (int slot = 0; slot < QUERY_RING_SIZE; slot++) {
+            startQueries[slot] = glGenQueries();
+            endQueries[slot] = glGenQueries();
+        }
+        statistics = new TimingStatistics(sampleCount);
+    }
+
+    /**
+     * @param capturedActivity if not null, receives the GPU timestamps of this measurement once they are read back.
+     */
+    void begin(CapturedActivity capturedActivity) {
+        currentSlot = (currentSlot + 1) % QUERY_RING_SIZE;
+        if (isPending[currentSlot]) {
+            collect(currentSlot);
+        }
+        capturedActivities[currentSlot] = capturedActivity;
+        glQueryCounter(startQueries[currentSlot], GL_TIMESTAMP);
+    }
+
+    void end() {
+        glQueryCounter(endQueries[currentSlot], GL_TIMESTAMP);
+        isPending[currentSlot] = true;
+    }
+
+    /**
+     * @return the captured activity passed to the last call to begin(), if any.
+     */
+    CapturedActivity getCapturedActivity() {
+        return capturedActivities[currentSlot];
+    }
+
+    TimingStatistics getStatistics() {
+        return statistics;
+    }
+
+    void dispose() {
+        glDeleteQueries(startQueries);
+        glDeleteQueries(endQueries);
+    }
+
+    private void collect(int slot) {
+        isPending[slot] = false;
+
+        // The end query is issued last: if its result is available, so is the start query's.
+        if (glGetQueryObjecti(endQueries[slot], GL_QUERY_RESULT_AVAILABLE) == GL_TRUE) {
+            long startNanoseconds = glGetQueryObjecti64(startQueries[slot], GL_QUERY_RESULT);
+            long endNanoseconds = glGetQueryObjecti64(endQueries[slot], GL_QUERY_RESULT);
+            statistics.addSample((endNanoseconds - startNanoseconds) / 1_000_000f);
+
+            if (capturedActivities[slot] != null) {
+                capturedActivities[slot].setGpuTimes(startNanoseconds, endNanoseconds);
+            }
+        }
+        capturedActivities[slot] = null;
+    }
+}
@@ -0,0 +1,119 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+import org.lwjgl.BufferUtils;
+import org.terasology.engine.rendering.opengl.FBO;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glGetTexImage;
+
+/**
+ * The result of comparing an image against a reference image, together with the means to obtain images from FBOs.
+ *
+ * Pixels are compared through the "redmean" approximation of the perceived distance between two colors, normalized
+ * to the [0, 1] range. A pixel differs from its reference if their distance exceeds the given tolerance, and
+ * an image matches its reference if no more than MAX_DIFFERING_PIXELS of its pixels differ. Small numerical
+ * differences, i.e. due to a change in the order of floating point operations, are therefore accepted, while
+ * visible artifacts are not, even if they are limited to a small area.
+ */
+class ImageComparison {
+    static final float MAX_DIFFERING_PIXELS = 0.001f;
+
+    // The distance between black and white, according to the formula in getDistance().
+    private static final double MAX_DISTANCE = Math.sqrt((2.0 + 255.0 / 256.0) * 255 * 255 + 4.0 * 255 * 255 + 2.0 * 255 * 255);
+    private static final int CHANNEL_MAX = 255;
+
+    final boolean hasSameSize;
+    final float maxDistance;
+    final float differingPixels;
+    final double psnr;
+
+    private ImageComparison(boolean hasSameSize, float maxDistance, float differingPixels, double psnr) {
+        this.hasSameSize = hasSameSize;
+        this.maxDistance = maxDistance;
+        this.differingPixels = differingPixels;
+        this.psnr = psnr;
+    }
+
+    boolean isMatching() {
+        return hasSameSize && differingPixels <= MAX_DIFFERING_PIXELS;
+    }
+
+    static ImageComparison compare(BufferedImage reference, BufferedImage image, float tolerance) {
+        if (reference.getWidth() != image.getWidth() || reference.getHeight() != image.getHeight()) {
+            return new ImageComparison(false, 1.0f, 1.0f, 0.0);
+        }
+
+        int differingPixelCount = 0;
+        double maxDistance = 0.0;
+        double squaredErrorSum = 0.0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int referenceRgb = reference.getRGB(x, y);
+                int rgb = image.getRGB(x, y);
+
+                int referenceRed = (referenceRgb >> 16) & 0xFF;
+                int red = (rgb >> 16) & 0xFF;
+                int deltaRed = red - referenceRed;
+                int deltaGreen = ((rgb >> 8) & 0xFF) - ((referenceRgb >> 8) & 0xFF);
+                int deltaBlue = (rgb & 0xFF) - (referenceRgb & 0xFF);
+
+                double distance = getDistance((referenceRed + red) / 2.0, deltaRed, deltaGreen, deltaBlue) / MAX_DISTANCE;
+                maxDistance = Math.max(maxDistance, distance);
+                if (distance > tolerance) {
+                    differingPixelCount++;
+                }
+                squaredErrorSum += deltaRed * deltaRed + deltaGreen * deltaGreen + deltaBlue * deltaBlue;
+            }
+        }
+
+        int pixelCount = image.getWidth() * image.getHeight();
+        double meanSquaredError = squaredErrorSum / (3.0 * pixelCount);
+        double psnr = meanSquaredError == 0.0
+                ? Double.POSITIVE_INFINITY
+                : 10.0 * Math.log10(CHANNEL_MAX * CHANNEL_MAX / meanSquaredError);
+        return new ImageComparison(true, (float) maxDistance, (float) differingPixelCount / pixelCount, psnr);
+    }
+
+    /**
+     * Weighs the channels differently depending on the average amount of red, roughly following the sensitivity
+     * of the human eye. See https://www.compuphase.com/cmetric.htm
+     */
+    private static double getDistance(double meanRed, int deltaRed, int deltaGreen, int deltaBlue) {
+        return Math.sqrt((2.0 + meanRed / 256.0) * deltaRed * deltaRed
+                + 4.0 * deltaGreen * deltaGreen
+                + (2.0 + (CHANNEL_MAX - meanRed) / 256.0) * deltaBlue * deltaBlue);
+    }
+
+    /**
+     * Reads the color buffer of the given FBO back from the GPU. Values outside the [0, 1] range, possible in HDR
+     * buffers, are clamped. Must be called from the thread owning the OpenGL context.
+     */
+    static BufferedImage readColorBuffer(FBO fbo) {
+        int width = fbo.width();
+        int height = fbo.height();
+        ByteBuffer pixels = BufferUtils.createByteBuffer(width * height * 4);
+
+        glBindTexture(GL_TEXTURE_2D, fbo.getColorBufferTextureId());
+        glGetTexImage(GL_TEXTURE_2D, 0, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+        glBindTexture(GL_TEXTURE_2D, 0);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int offset = (y * width + x) * 4;
+                int rgb = (pixels.get(offset) & 0xFF) << 16 | (pixels.get(offset + 1) & 0xFF) << 8 | pixels.get(offset + 2) & 0xFF;
+                // OpenGL rows go bottom to top.
+                image.setRGB(x, height - 1 - y, rgb);
+            }
+        }
+        return image;
+    }
+}
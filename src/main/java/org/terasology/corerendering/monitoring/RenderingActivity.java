@@ -0,0 +1,58 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+import org.terasology.engine.rendering.dag.Node;
+
+/**
+ * A handle to an activity monitored by the RenderingProfiler, meant to be created once and used every frame.
+ *
+ * Unlike RenderingProfiler.startActivity(String), starting an activity through its handle doesn't require the
+ * activity name to be built every time nor the activity's GPU timer to be looked up by name.
+ */
+public final class RenderingActivity {
+    private static final String NODE_ACTIVITY_PREFIX = "rendering/";
+
+    final String name;
+    GpuTimer gpuTimer;
+    int gpuTimerGeneration;
+    UniformCallStatistics uniformCallStatistics;
+    TriangleStatistics triangleStatistics;
+
+    public RenderingActivity(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return a handle to the activity of the given node, named "rendering/" followed by the node's uri.
+     */
+    public static RenderingActivity forNode(Node node) {
+        return new RenderingActivity(NODE_ACTIVITY_PREFIX + node.getUri());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void start() {
+        RenderingProfiler.startActivity(this);
+    }
+
+    public void end() {
+        RenderingProfiler.endActivity();
+    }
+
+    /**
+     * Counts a uniform value set by this activity, or skipped if unchanged. See MaterialUniformCache.
+     */
+    public void countUniformCall(boolean isSkipped) {
+        RenderingProfiler.countUniformCall(this, isSkipped);
+    }
+
+    /**
+     * Counts triangles rendered by this activity at the given chunk level of detail. See ChunkLodSelector.
+     */
+    public void countTriangles(int lodLevel, int triangleCount) {
+        RenderingProfiler.countTriangles(this, lodLevel, triangleCount);
+    }
+}
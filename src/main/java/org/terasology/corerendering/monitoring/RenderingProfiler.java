@@ -0,0 +1,286 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.monitoring.PerformanceMonitor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * A thin layer in front of the PerformanceMonitor, used by the rendering nodes to delimit their activities.
+ *
+ * On top of the CPU timings gathered by the PerformanceMonitor, this class can measure how long the GPU takes
+ * to execute the commands issued within each activity. GPU timing is disabled by default, in which case this
+ * class adds nothing but a boolean check to the PerformanceMonitor calls.
+ *
+ * The PerformanceMonitor cannot record durations measured elsewhere, hence the GPU timings are kept here,
+ * under the same activity names used by the PerformanceMonitor. See the gpuTiming and gpuTimings commands.
+ *
+ * Finally, this class can capture every activity taking place over a number of frames, together with the
+ * triangles rendered by each, and write them to a trace file or a summary. See the captureFrames and
+ * benchmarkFrames commands.
+ *
+ * It also keeps count of the uniform values set and skipped by each activity. See the uniformCalls command.
+ */
+public final class RenderingProfiler {
+    private static final Logger logger = LoggerFactory.getLogger(RenderingProfiler.class);
+
+    private static final int GPU_SAMPLE_COUNT = 120;
+
+    private static final Map<String, GpuTimer> gpuTimers = new LinkedHashMap<>();
+    private static final Deque<GpuTimer> activeGpuTimers = new ArrayDeque<>();
+    private static boolean isGpuTimingEnabled;
+    // Incremented whenever the GPU timers are disposed, invalidating those cached by RenderingActivity instances.
+    private static int gpuTimerGeneration;
+
+    // A new frame is considered to begin whenever an activity starts for the second time within the current frame.
+    private static final Map<String, Integer> lastStartFrames = new HashMap<>();
+    private static FrameCapture frameCapture;
+    private static ToIntFunction<String> stateChangeCounter;
+    private static boolean isGpuTimingEnabledAfterCapture;
+
+    private static final Map<String, UniformCallStatistics> uniformCallStatistics = new LinkedHashMap<>();
+    private static final Map<String, TriangleStatistics> triangleStatistics = new LinkedHashMap<>();
+
+    private RenderingProfiler() {
+    }
+
+    /**
+     * Starts an activity given its name. Activities taking place every frame should rather be started
+     * through a RenderingActivity handle, which avoids building the name and looking up the activity every time.
+     */
+    public static void startActivity(String activityName) {
+        PerformanceMonitor.startActivity(activityName);
+
+        if (isGpuTimingEnabled) {
+            startGpuActivity(activityName, null);
+        }
+    }
+
+    public static void startActivity(RenderingActivity activity) {
+        PerformanceMonitor.startActivity(activity.name);
+
+        if (isGpuTimingEnabled) {
+            startGpuActivity(activity.name, activity);
+        }
+    }
+
+    public static void endActivity() {
+        if (isGpuTimingEnabled && !activeGpuTimers.isEmpty()) {
+            GpuTimer gpuTimer = activeGpuTimers.pop();
+            gpuTimer.end();
+
+            CapturedActivity capturedActivity = gpuTimer.getCapturedActivity();
+            if (capturedActivity != null) {
+                capturedActivity.cpuEndNanoseconds = System.nanoTime();
+            }
+        }
+
+        PerformanceMonitor.endActivity();
+    }
+
+    /**
+     * Attributes the given number of triangles to the innermost activity currently taking place,
+     * for the benefit of frame captures. Does nothing unless frames are being captured.
+     */
+    public static void addTriangles(int triangleCount) {
+        if (frameCapture != null && !activeGpuTimers.isEmpty()) {
+            CapturedActivity capturedActivity = activeGpuTimers.peek().getCapturedActivity();
+            if (capturedActivity != null) {
+                capturedActivity.triangleCount += triangleCount;
+            }
+        }
+    }
+
+    /**
+     * Counts a uniform value set by the given activity, or skipped if unchanged. Unlike the GPU timings,
+     * these counts are always kept, as they come at the cost of an increment.
+     */
+    static void countUniformCall(RenderingActivity activity, boolean isSkipped) {
+        if (activity.uniformCallStatistics == null) {
+            activity.uniformCallStatistics = uniformCallStatistics.computeIfAbsent(activity.name,
+                    name -> new UniformCallStatistics());
+        }
+        activity.uniformCallStatistics.count(isSkipped);
+
+        if (frameCapture != null && !activeGpuTimers.isEmpty()) {
+            CapturedActivity capturedActivity = activeGpuTimers.peek().getCapturedActivity();
+            if (capturedActivity != null) {
+                if (isSkipped) {
+                    capturedActivity.uniformCallsSkipped++;
+                } else {
+                    capturedActivity.uniformCallsIssued++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts triangles rendered by the given activity at the given chunk level of detail. Like the uniform
+     * call counts, these are always kept. Doesn't replace addTriangles(int), which counts all triangles.
+     */
+    static void countTriangles(RenderingActivity activity, int lodLevel, int triangleCount) {
+        if (activity.triangleStatistics == null) {
+            activity.triangleStatistics = triangleStatistics.computeIfAbsent(activity.name,
+                    name -> new TriangleStatistics());
+        }
+        activity.triangleStatistics.count(lodLevel, triangleCount);
+
+        if (frameCapture != null && !activeGpuTimers.isEmpty()) {
+            CapturedActivity capturedActivity = activeGpuTimers.peek().getCapturedActivity();
+            if (capturedActivity != null) {
+                capturedActivity.lodTriangleCounts[lodLevel] += triangleCount;
+            }
+        }
+    }
+
+    /**
+     * @return the uniform call counts of each activity setting uniforms through a MaterialUniformCache,
+     * in order of first appearance.
+     */
+    public static Map<String, UniformCallStatistics> getUniformCallStatistics() {
+        return Collections.unmodifiableMap(uniformCallStatistics);
+    }
+
+    /**
+     * @return the triangle counts per chunk level of detail of each activity rendering chunks, in order of first appearance.
+     */
+    public static Map<String, TriangleStatistics> getTriangleStatistics() {
+        return Collections.unmodifiableMap(triangleStatistics);
+    }
+
+    public static boolean isGpuTimingEnabled() {
+        return isGpuTimingEnabled;
+    }
+
+    /**
+     * Enables or disables GPU timing. Disabling it releases all the GPU queries and discards the timings gathered so far.
+     *
+     * Must be called from the thread owning the OpenGL context.
+     */
+    public static void setGpuTimingEnabled(boolean enabled) {
+        if (frameCapture != null) {
+            // GPU timing is required by the capture in progress: the change is applied once it completes.
+            isGpuTimingEnabledAfterCapture = enabled;
+            return;
+        }
+
+        if (!enabled) {
+            gpuTimers.values().forEach(GpuTimer::dispose);
+            gpuTimers.clear();
+            activeGpuTimers.clear();
+            gpuTimerGeneration++;
+        }
+
+        isGpuTimingEnabled = enabled;
+    }
+
+    /**
+     * @return the GPU timing statistics of each activity measured so far, in order of first appearance.
+     */
+    public static Map<String, TimingStatistics> getGpuTimings() {
+        Map<String, TimingStatistics> gpuTimings = new LinkedHashMap<>();
+        gpuTimers.forEach((activityName, gpuTimer) -> gpuTimings.put(activityName, gpuTimer.getStatistics()));
+        return Collections.unmodifiableMap(gpuTimings);
+    }
+
+    public static boolean isCapturingFrames() {
+        return frameCapture != null;
+    }
+
+    /**
+     * Starts recording the activities of the given number of frames. Once done, and once the GPU timings
+     * of the last recorded frame have been read back, the capture is written to the given file in the given format.
+     *
+     * GPU timing is enabled for the duration of the capture, if it isn't already.
+     * Must be called from the thread owning the OpenGL context.
+     *
+     * @param stateChangeCounter provides the number of state changes requested by the node behind a given activity name.
+     */
+    public static void startFrameCapture(int frameCount, Path file, FrameCaptureFormat format,
+                                         ToIntFunction<String> stateChangeCounter) {
+        if (frameCapture != null) {
+            throw new IllegalStateException("A frame capture is already in progress, into " + frameCapture.getFile());
+        }
+
+        isGpuTimingEnabledAfterCapture = isGpuTimingEnabled;
+        isGpuTimingEnabled = true;
+
+        RenderingProfiler.stateChangeCounter = stateChangeCounter;
+        lastStartFrames.clear();
+        frameCapture = new FrameCapture(frameCount, file, format);
+    }
+
+    /**
+     * @param activity the handle of the activity, if any, caching its GPU timer.
+     */
+    private static void startGpuActivity(String activityName, RenderingActivity activity) {
+        CapturedActivity capturedActivity = null;
+
+        if (frameCapture != null) {
+            Integer lastStartFrame = lastStartFrames.get(activityName);
+            if (lastStartFrame != null && lastStartFrame == frameCapture.getFrame()) {
+                frameCapture.nextFrame();
+
+                if (frameCapture.isComplete()) {
+                    // No activity is in progress between frames: GPU timing can safely be disabled here.
+                    finishFrameCapture();
+                    if (!isGpuTimingEnabled) {
+                        return;
+                    }
+                }
+            }
+
+            if (frameCapture != null) {
+                lastStartFrames.put(activityName, frameCapture.getFrame());
+                if (frameCapture.isRecording()) {
+                    capturedActivity = frameCapture.startActivity(activityName);
+                }
+            }
+        }
+
+        GpuTimer gpuTimer;
+        if (activity == null) {
+            gpuTimer = getGpuTimer(activityName);
+        } else {
+            if (activity.gpuTimer == null || activity.gpuTimerGeneration != gpuTimerGeneration) {
+                activity.gpuTimer = getGpuTimer(activityName);
+                activity.gpuTimerGeneration = gpuTimerGeneration;
+            }
+            gpuTimer = activity.gpuTimer;
+        }
+
+        gpuTimer.begin(capturedActivity);
+        activeGpuTimers.push(gpuTimer);
+    }
+
+    private static GpuTimer getGpuTimer(String activityName) {
+        return gpuTimers.computeIfAbsent(activityName, name -> new GpuTimer(GPU_SAMPLE_COUNT));
+    }
+
+    private static void finishFrameCapture() {
+        FrameCapture completedCapture = frameCapture;
+        frameCapture = null;
+        lastStartFrames.clear();
+
+        try {
+            completedCapture.write(stateChangeCounter);
+            logger.info("Frame capture written to {}", completedCapture.getFile());
+        } catch (IOException e) {
+            logger.error("Failed to write the frame capture to {}", completedCapture.getFile(), e);
+        }
+        stateChangeCounter = null;
+
+        setGpuTimingEnabled(isGpuTimingEnabledAfterCapture);
+    }
+}
@@ -0,0 +1,217 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+import org.terasology.corerendering.rendering.ChunkLodSelector;
+import org.terasology.corerendering.rendering.CoreRenderingModule;
+import org.terasology.corerendering.rendering.MaterialUniformCache;
+import org.terasology.corerendering.rendering.ShaderWarmUp;
+import org.terasology.corerendering.rendering.StateChangeAnalysis;
+import org.terasology.engine.core.PathManager;
+import org.terasology.engine.core.module.rendering.RenderingModuleRegistry;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.logic.console.commandSystem.annotations.Command;
+import org.terasology.engine.logic.console.commandSystem.annotations.CommandParam;
+import org.terasology.engine.logic.permission.PermissionManager;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.rendering.ShaderManager;
+import org.terasology.engine.rendering.dag.Node;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Console commands giving access to the profiling facilities of the RenderingProfiler.
+ */
+@RegisterSystem(RegisterMode.CLIENT)
+public class RenderingProfilerCommands extends BaseComponentSystem {
+    private static final String ACTIVITY_PREFIX = "rendering/";
+    private static final String CAPTURES_DIRECTORY = "frameCaptures";
+    private static final String BENCHMARKS_DIRECTORY = "benchmarks";
+    private static final DateTimeFormatter CAPTURE_FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @In
+    private RenderingModuleRegistry renderingModuleRegistry;
+    @In
+    private ShaderManager shaderManager;
+
+    @Command(shortDescription = "Toggles the GPU timing of the rendering nodes",
+            helpText = "Measures how long the GPU takes to execute the work of each rendering node. See also: gpuTimings",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String gpuTiming(@CommandParam("enabled") boolean enabled) {
+        RenderingProfiler.setGpuTimingEnabled(enabled);
+        return "GPU timing " + (enabled ? "enabled" : "disabled");
+    }
+
+    @Command(shortDescription = "Shows the GPU time taken by each rendering node",
+            helpText = "Shows average, median, 95th and 99th percentile of the GPU time of each rendering node, "
+                    + "in milliseconds, over the last few seconds. Requires GPU timing to be enabled, see: gpuTiming",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String gpuTimings() {
+        if (!RenderingProfiler.isGpuTimingEnabled()) {
+            return "GPU timing is disabled. Enable it with: gpuTiming true";
+        }
+
+        StringBuilder report = new StringBuilder(String.format("%-64s %8s %8s %8s %8s%n", "activity", "mean", "p50", "p95", "p99"));
+        for (Map.Entry<String, TimingStatistics> entry : RenderingProfiler.getGpuTimings().entrySet()) {
+            TimingStatistics statistics = entry.getValue();
+            report.append(String.format("%-64s %8.3f %8.3f %8.3f %8.3f%n", entry.getKey(), statistics.getMean(),
+                    statistics.getPercentile(50), statistics.getPercentile(95), statistics.getPercentile(99)));
+        }
+        return report.toString();
+    }
+
+    @Command(shortDescription = "Shows the uniform values set and skipped by each rendering node",
+            helpText = "Shows how many uniform values each rendering node set on its materials and how many it skipped "
+                    + "because they were unchanged, since the last time this command was used. "
+                    + "Only uniforms set through a MaterialUniformCache are counted",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String uniformCalls() {
+        StringBuilder report = new StringBuilder(String.format("%-64s %10s %10s %8s%n", "activity", "issued", "skipped", "skipped%"));
+        for (Map.Entry<String, UniformCallStatistics> entry : RenderingProfiler.getUniformCallStatistics().entrySet()) {
+            UniformCallStatistics statistics = entry.getValue();
+            long total = statistics.getIssuedCount() + statistics.getSkippedCount();
+            report.append(String.format("%-64s %10d %10d %8.1f%n", entry.getKey(), statistics.getIssuedCount(),
+                    statistics.getSkippedCount(), total > 0 ? 100.0 * statistics.getSkippedCount() / total : 0.0));
+            statistics.reset();
+        }
+        return report.toString();
+    }
+
+    @Command(shortDescription = "Recompiles all shaders",
+            helpText = "Recompiles all shaders and discards the uniform values remembered by every MaterialUniformCache, "
+                    + "which would otherwise be stale for the recompiled programs",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String recompileShaders() {
+        shaderManager.recompileAllShaders();
+        MaterialUniformCache.invalidateAll();
+        return "Shaders recompiled";
+    }
+
+    @Command(shortDescription = "Shows the chunk triangles rendered by each rendering node at each level of detail",
+            helpText = "Shows how many chunk triangles each rendering node rendered at full, reduced and low detail, "
+                    + "and the share of the latter two, since the last time this command was used. "
+                    + "The levels of detail depend on the distance of the chunks from the camera",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String lodTriangles() {
+        StringBuilder report = new StringBuilder(String.format("%-64s %12s %12s %12s %8s%n", "activity",
+                "full", "reduced", "low", "coarse%"));
+        for (Map.Entry<String, TriangleStatistics> entry : RenderingProfiler.getTriangleStatistics().entrySet()) {
+            TriangleStatistics statistics = entry.getValue();
+            long total = statistics.getTotalTriangleCount();
+            long coarse = total - statistics.getTriangleCount(ChunkLodSelector.FULL_DETAIL);
+            report.append(String.format("%-64s %12d %12d %12d %8.1f%n", entry.getKey(),
+                    statistics.getTriangleCount(ChunkLodSelector.FULL_DETAIL),
+                    statistics.getTriangleCount(ChunkLodSelector.REDUCED_DETAIL),
+                    statistics.getTriangleCount(ChunkLodSelector.LOW_DETAIL),
+                    total > 0 ? 100.0 * coarse / total : 0.0));
+            statistics.reset();
+        }
+        return report.toString();
+    }
+
+    @Command(shortDescription = "Toggles the distance culling of shadow casters and foliage",
+            helpText = "Beyond the reduced detail distance chunks no longer cast shadows, beyond the low detail distance "
+                    + "foliage and plants are no longer rendered either. The distances are optional. See also: lodTriangles",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String chunkDistanceCulling(@CommandParam("enabled") boolean enabled,
+                                       @CommandParam(value = "reducedDetailDistance", required = false) Float reducedDetailDistance,
+                                       @CommandParam(value = "lowDetailDistance", required = false) Float lowDetailDistance) {
+        ChunkLodSelector chunkLodSelector = getCoreRendering().getChunkLodSelector();
+        if (chunkLodSelector == null) {
+            return "The rendering has not been initialised yet";
+        }
+
+        chunkLodSelector.setDistanceCullingEnabled(enabled);
+        if (reducedDetailDistance != null) {
+            chunkLodSelector.setDistances(reducedDetailDistance,
+                    lowDetailDistance != null ? lowDetailDistance : chunkLodSelector.getLowDetailDistance());
+        }
+        return String.format("Chunk distance culling %s, reduced detail beyond %.0f, low detail beyond %.0f",
+                enabled ? "enabled" : "disabled", chunkLodSelector.getReducedDetailDistance(),
+                chunkLodSelector.getLowDetailDistance());
+    }
+
+    @Command(shortDescription = "Shows the time taken to warm up each shader program on startup",
+            helpText = "Shows how long each shader program took to be ready when the rendering was initialised, "
+                    + "in milliseconds",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String shaderWarmUp() {
+        ShaderWarmUp shaderWarmUp = getCoreRendering().getShaderWarmUp();
+        if (shaderWarmUp == null) {
+            return "The rendering has not been initialised yet";
+        }
+
+        StringBuilder report = new StringBuilder(String.format("%-64s %8s%n", "shader program", "ms"));
+        for (ShaderWarmUp.Permutation permutation : shaderWarmUp.getWarmedUpPermutations()) {
+            report.append(String.format("%-64s %8.3f%n", permutation, permutation.getMilliseconds()));
+        }
+        report.append(String.format("%-64s %8.3f%n", "total",
+                shaderWarmUp.getTotalMilliseconds()));
+        return report.toString();
+    }
+
+    @Command(shortDescription = "Counts the state changes issued by the rendering nodes",
+            helpText = "Counts the state changes desired by the rendering nodes, those made redundant by adjacent nodes "
+                    + "and those actually issued, in the current order of the nodes and in an order attempting "
+                    + "to minimize FBO bindings and material changes. The latter is only a hint: nodes may depend "
+                    + "on each other in ways the render graph doesn't express",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String stateChangeReport() {
+        return StateChangeAnalysis.report(getCoreRendering().getEnabledNodesInProcessingOrder());
+    }
+
+    @Command(shortDescription = "Records the activity of the rendering nodes over a number of frames",
+            helpText = "Records CPU and GPU timings, triangle counts, state change counts and uniform call counts "
+                    + "of each rendering node "
+                    + "over the given number of frames, then writes them to a file in the frameCaptures folder. "
+                    + "The file uses the Chrome trace-event format: open it with chrome://tracing or https://ui.perfetto.dev",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String captureFrames(@CommandParam("frames") int frames) {
+        return startFrameCapture(frames, CAPTURES_DIRECTORY, "frames-", FrameCaptureFormat.TRACE);
+    }
+
+    @Command(shortDescription = "Benchmarks the rendering nodes over a number of frames",
+            helpText = "Records the activity of each rendering node over the given number of frames, then writes "
+                    + "the mean and 95th percentile of its CPU and GPU timings, together with its average triangle "
+                    + "and uniform call counts per frame and its state change count, to a JSON file in the "
+                    + "benchmarks folder. The file also names the OpenGL implementation, so that results "
+                    + "from different builds and machines can be told apart and compared",
+            requiredPermission = PermissionManager.NO_PERMISSION)
+    public String benchmarkFrames(@CommandParam("frames") int frames) {
+        return startFrameCapture(frames, BENCHMARKS_DIRECTORY, "benchmark-", FrameCaptureFormat.SUMMARY);
+    }
+
+    private String startFrameCapture(int frames, String directory, String filePrefix, FrameCaptureFormat format) {
+        if (frames <= 0) {
+            return "The number of frames must be positive";
+        }
+        if (RenderingProfiler.isCapturingFrames()) {
+            return "A frame capture is already in progress";
+        }
+
+        Path file = PathManager.getInstance().getHomePath().resolve(directory)
+                .resolve(filePrefix + LocalDateTime.now().format(CAPTURE_FILE_DATE_FORMAT) + ".json");
+        CoreRenderingModule coreRendering = getCoreRendering();
+        RenderingProfiler.startFrameCapture(frames, file, format, activityName -> countStateChanges(coreRendering, activityName));
+
+        return "Capturing " + frames + " frames into " + file;
+    }
+
+    private CoreRenderingModule getCoreRendering() {
+        return (CoreRenderingModule) renderingModuleRegistry.getModuleRenderingByClass(CoreRenderingModule.class);
+    }
+
+    private static int countStateChanges(CoreRenderingModule coreRendering, String activityName) {
+        if (!activityName.startsWith(ACTIVITY_PREFIX)) {
+            return 0;
+        }
+
+        Node node = coreRendering.findNode(activityName.substring(ACTIVITY_PREFIX.length()));
+        return node != null ? node.getDesiredStateChanges().size() : 0;
+    }
+}
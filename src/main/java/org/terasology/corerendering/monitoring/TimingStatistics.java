@@ -0,0 +1,58 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent samples of a timing, in milliseconds, and provides their average and percentiles.
+ *
+ * Adding a sample is allocation-free. Percentiles require sorting a copy of the samples, hence they are meant
+ * to be requested for reporting purposes only, not every frame.
+ */
+public class TimingStatistics {
+    private final float[] samples;
+    private int nextSample;
+    private int sampleCount;
+
+    public TimingStatistics(int capacity) {
+        samples = new float[capacity];
+    }
+
+    public void addSample(float milliseconds) {
+        samples[nextSample] = milliseconds;
+        nextSample = (nextSample + 1) % samples.length;
+        sampleCount = Math.min(sampleCount + 1, samples.length);
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public float getMean() {
+        if (sampleCount == 0) {
+            return 0;
+        }
+
+        float sum = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            sum += samples[i];
+        }
+        return sum / sampleCount;
+    }
+
+    /**
+     * @param percentile a value in the [0, 100] range, i.e. 95 for the 95th percentile.
+     * @return the smallest sample that is greater or equal to the given percentage of the samples, or 0 if there are no samples.
+     */
+    public float getPercentile(float percentile) {
+        if (sampleCount == 0) {
+            return 0;
+        }
+
+        float[] sortedSamples = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sortedSamples);
+        int index = (int) Math.ceil(percentile / 100f * sampleCount) - 1;
+        return sortedSamples[Math.max(0, Math.min(index, sampleCount - 1))];
+    }
+}
@@ -0,0 +1,30 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+import org.terasology.corerendering.rendering.ChunkLodSelector;
+
+import java.util.Arrays;
+
+/**
+ * Counts the triangles an activity rendered at each chunk level of detail. See ChunkLodSelector.
+ */
+public class TriangleStatistics {
+    private final long[] triangleCounts = new long[ChunkLodSelector.LEVEL_COUNT];
+
+    void count(int lodLevel, int triangleCount) {
+        triangleCounts[lodLevel] += triangleCount;
+    }
+
+    public long getTriangleCount(int lodLevel) {
+        return triangleCounts[lodLevel];
+    }
+
+    public long getTotalTriangleCount() {
+        return Arrays.stream(triangleCounts).sum();
+    }
+
+    public void reset() {
+        Arrays.fill(triangleCounts, 0);
+    }
+}
@@ -0,0 +1,33 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.monitoring;
+
+/**
+ * Counts the uniform values an activity set on its materials and those it skipped because they were unchanged.
+ * See MaterialUniformCache.
+ */
+public class UniformCallStatistics {
+    private long issuedCount;
+    private long skippedCount;
+
+    void count(boolean isSkipped) {
+        if (isSkipped) {
+            skippedCount++;
+        } else {
+            issuedCount++;
+        }
+    }
+
+    public long getIssuedCount() {
+        return issuedCount;
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    public void reset() {
+        issuedCount = 0;
+        skippedCount = 0;
+    }
+}
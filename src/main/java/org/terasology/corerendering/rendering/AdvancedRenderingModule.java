@@ -5,11 +5,12 @@ package org.terasology.corerendering.rendering;
 import org.terasology.corerendering.rendering.dag.nodes.AmbientOcclusionNode;
 import org.terasology.corerendering.rendering.dag.nodes.BloomBlurNode;
 import org.terasology.corerendering.rendering.dag.nodes.BlurredAmbientOcclusionNode;
-import org.terasology.corerendering.rendering.dag.nodes.BufferClearingNode;
+import org.terasology.corerendering.rendering.dag.nodes.DeferredMainLightNode;
 import org.terasology.corerendering.rendering.dag.nodes.HazeNode;
 import org.terasology.corerendering.rendering.dag.nodes.HighPassNode;
 import org.terasology.corerendering.rendering.dag.nodes.LightShaftsNode;
 import org.terasology.corerendering.rendering.dag.nodes.ShadowMapNode;
+import org.terasology.corerendering.rendering.dag.nodes.ShadowMomentsNode;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.rendering.cameras.Camera;
 import org.terasology.engine.rendering.dag.ModuleRendering;
@@ -20,7 +21,6 @@ import org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo
 import org.terasology.engine.rendering.opengl.fbms.ImmutableFbo;
 import org.terasology.engine.rendering.opengl.fbms.ShadowMapResolutionDependentFbo;
 
-import static org.lwjgl.opengl.GL11.GL_DEPTH_BUFFER_BIT;
 import static org.terasology.engine.rendering.opengl.ScalingFactors.HALF_SCALE;
 import static org.terasology.engine.rendering.opengl.ScalingFactors.ONE_16TH_SCALE;
 import static org.terasology.engine.rendering.opengl.ScalingFactors.ONE_32TH_SCALE;
@@ -117,18 +117,22 @@ public class AdvancedRenderingModule extends ModuleRendering {
     }
 
     private void addShadowMap() {
-        FboConfig shadowMapConfig = new FboConfig(ShadowMapNode.SHADOW_MAP_FBO_URI, FBO.Type.NO_COLOR).useDepthBuffer();
-        BufferClearingNode shadowMapClearingNode = new BufferClearingNode("shadowMapClearingNode", providingModule,
-            context,
-            shadowMapConfig, shadowMapResolutionDependentFbo, GL_DEPTH_BUFFER_BIT);
-        renderGraph.addNode(shadowMapClearingNode);
-
         shadowMapNode = new ShadowMapNode("shadowMapNode", providingModule, context);
-        renderGraph.connectFbo(shadowMapClearingNode, 1, shadowMapNode, 1);
         renderGraph.addNode(shadowMapNode);
 
-        Node deferredMainLightNode = renderGraph.findNode("CoreRendering:deferredMainLightNode");
+        DeferredMainLightNode deferredMainLightNode = (DeferredMainLightNode) renderGraph.findNode("CoreRendering:deferredMainLightNode");
         renderGraph.connectFbo(shadowMapNode, 1, deferredMainLightNode, 1);
+
+        ShadowMomentsNode horizontalShadowMomentsNode = new ShadowMomentsNode("horizontalShadowMomentsNode", providingModule,
+                context, deferredMainLightNode, ShadowMomentsNode.SHADOW_MOMENTS_BLUR_FBO_URI, true);
+        renderGraph.connectFbo(shadowMapNode, 1, horizontalShadowMomentsNode, 1);
+        renderGraph.addNode(horizontalShadowMomentsNode);
+
+        ShadowMomentsNode verticalShadowMomentsNode = new ShadowMomentsNode("verticalShadowMomentsNode", providingModule,
+                context, deferredMainLightNode, ShadowMomentsNode.SHADOW_MOMENTS_FBO_URI, false);
+        renderGraph.connectRunOrder(horizontalShadowMomentsNode, 1, verticalShadowMomentsNode, 1);
+        renderGraph.addNode(verticalShadowMomentsNode);
+        renderGraph.connectRunOrder(verticalShadowMomentsNode, 1, deferredMainLightNode, 4);
     }
 
     private void addAmbientOcclusion() {
@@ -0,0 +1,129 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.rendering;
+
+import org.joml.Vector3fc;
+import org.terasology.engine.world.chunks.RenderableChunk;
+import org.terasology.joml.geom.AABBfc;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Culls shadow casters and foliage by distance. To this end it assigns chunks a "level of detail" depending on
+ * their distance from the camera, measured from the nearest point of their bounding box.
+ *
+ * The engine provides a single mesh per chunk, hence the levels don't select between meshes of different
+ * resolution, and no mesh is ever simplified. Instead, each node rendering chunks decides what to leave out
+ * of coarser levels:
+ *
+ * - FULL_DETAIL: everything is rendered.
+ * - REDUCED_DETAIL: chunks no longer cast shadows, including shadows that would fall within the shadow map.
+ *   See ShadowMapNode.
+ * - LOW_DETAIL: alpha-rejected geometry, i.e. leaves and plants, is no longer rendered either.
+ *   See AlphaRejectBlocksNode.
+ *
+ * As the coarser levels leave visible content out of the frame, distance culling is disabled by default:
+ * all chunks are at FULL_DETAIL until it is enabled with setDistanceCullingEnabled(), e.g. through the
+ * chunkDistanceCulling console command. The distances are kept here rather than on any node, so that all nodes
+ * use the same ones in the same frame, whichever order they run in.
+ *
+ * A chunk moves to a coarser level only once it is farther than the threshold by a fraction of it,
+ * and back to a finer level only once it is closer than the threshold by the same fraction. Chunks
+ * lying around a threshold therefore don't switch level back and forth as the camera moves slightly.
+ *
+ * All nodes are meant to share the instance found in the context, so that a chunk has the same level
+ * in all of them. Must be used from the rendering thread.
+ */
+public class ChunkLodSelector {
+    public static final int FULL_DETAIL = 0;
+    public static final int REDUCED_DETAIL = 1;
+    public static final int LOW_DETAIL = 2;
+    public static final int LEVEL_COUNT = 3;
+
+    // Beyond ShadowMapNode.SHADOW_FRUSTUM_BOUNDS, so that the shadow map keeps its casters around the player.
+    public static final float DEFAULT_REDUCED_DETAIL_DISTANCE = 256.0f;
+    public static final float DEFAULT_LOW_DETAIL_DISTANCE = 512.0f;
+
+    private static final float HYSTERESIS = 0.1f;
+
+    // The distance beyond which each level but the last gives way to the next one, while distance culling is enabled.
+    private final float[] thresholds = {DEFAULT_REDUCED_DETAIL_DISTANCE, DEFAULT_LOW_DETAIL_DISTANCE};
+    private boolean isDistanceCullingEnabled;
+
+    // Chunks are removed once unloaded and no longer referenced by the engine.
+    private final Map<RenderableChunk, Integer> levels = new WeakHashMap<>();
+
+    /**
+     * @param isDistanceCullingEnabled true to assign chunks a coarser level beyond the given distances,
+     *                                 false to keep all chunks at FULL_DETAIL.
+     */
+    public void setDistanceCullingEnabled(boolean isDistanceCullingEnabled) {
+        this.isDistanceCullingEnabled = isDistanceCullingEnabled;
+    }
+
+    public boolean isDistanceCullingEnabled() {
+        return isDistanceCullingEnabled;
+    }
+
+    /**
+     * @param reducedDetailDistance the distance beyond which chunks are rendered at REDUCED_DETAIL
+     * @param lowDetailDistance the distance beyond which chunks are rendered at LOW_DETAIL
+     *
+     * Float.POSITIVE_INFINITY makes the corresponding level unreachable.
+     * The distances only apply while distance culling is enabled.
+     */
+    public void setDistances(float reducedDetailDistance, float lowDetailDistance) {
+        thresholds[0] = reducedDetailDistance;
+        thresholds[1] = Math.max(lowDetailDistance, reducedDetailDistance);
+    }
+
+    public float getReducedDetailDistance() {
+        return thresholds[0];
+    }
+
+    public float getLowDetailDistance() {
+        return thresholds[1];
+    }
+
+    /**
+     * @return the level of detail of the given chunk, between FULL_DETAIL and LOW_DETAIL included,
+     * always FULL_DETAIL while distance culling is disabled.
+     */
+    public int getLevel(RenderableChunk chunk, Vector3fc cameraPosition) {
+        if (!isDistanceCullingEnabled) {
+            return FULL_DETAIL;
+        }
+
+        float distance = (float) Math.sqrt(getDistanceSquared(chunk.getAABB(), cameraPosition));
+        Integer previousLevel = levels.get(chunk);
+
+        int level = FULL_DETAIL;
+        while (level < LEVEL_COUNT - 1) {
+            float threshold = thresholds[level];
+            if (previousLevel != null) {
+                threshold *= previousLevel > level ? 1.0f - HYSTERESIS : 1.0f + HYSTERESIS;
+            }
+            if (distance <= threshold) {
+                break;
+            }
+            level++;
+        }
+
+        if (previousLevel == null || previousLevel != level) {
+            levels.put(chunk, level);
+        }
+        return level;
+    }
+
+    /**
+     * @return the squared distance between the given point and the nearest point of the given box,
+     * zero if the point is inside the box.
+     */
+    public static float getDistanceSquared(AABBfc aabb, Vector3fc point) {
+        float dx = Math.max(Math.max(aabb.minX() - point.x(), 0.0f), point.x() - aabb.maxX());
+        float dy = Math.max(Math.max(aabb.minY() - point.y(), 0.0f), point.y() - aabb.maxY());
+        float dz = Math.max(Math.max(aabb.minZ() - point.z(), 0.0f), point.z() - aabb.maxZ());
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -3,8 +3,11 @@
 package org.terasology.corerendering.rendering;
 
 import org.terasology.corerendering.rendering.dag.nodes.*;
+import org.terasology.engine.config.Config;
+import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.subsystem.DisplayDevice;
+import org.terasology.engine.rendering.assets.shader.ShaderProgramFeature;
 import org.terasology.engine.rendering.cameras.Camera;
 import org.terasology.engine.rendering.dag.Node;
 import org.terasology.engine.rendering.dag.RenderGraph;
@@ -18,6 +21,10 @@ import org.terasology.engine.rendering.opengl.SwappableFBO;
 import org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo;
 import org.terasology.engine.rendering.opengl.fbms.ImmutableFbo;
 import org.terasology.engine.rendering.opengl.fbms.ShadowMapResolutionDependentFbo;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
 import static org.lwjgl.opengl.GL11.GL_DEPTH_BUFFER_BIT;
@@ -39,6 +46,8 @@ public class CoreRenderingModule extends ModuleRendering {
     private ImmutableFbo immutableFbo;
 
     private ShadowMapNode shadowMapNode;
+    private ShaderWarmUp shaderWarmUp;
+    private ChunkLodSelector chunkLodSelector;
     private DisplayDevice displayDevice;
 
     private static int initializationPriority = 1;
@@ -63,6 +72,10 @@ public class CoreRenderingModule extends ModuleRendering {
         shadowMapResolutionDependentFbo = new ShadowMapResolutionDependentFbo();
         context.put(ShadowMapResolutionDependentFbo.class, shadowMapResolutionDependentFbo);
 
+        // Shared by the nodes rendering chunks, including those provided by other modules.
+        chunkLodSelector = new ChunkLodSelector();
+        context.put(ChunkLodSelector.class, chunkLodSelector);
+
         displayResolutionDependentFbo = context.get(DisplayResolutionDependentFbo.class);
         displayDevice = context.get(DisplayDevice.class);
 
@@ -90,7 +103,13 @@ public class CoreRenderingModule extends ModuleRendering {
 
         addVignetteNode(renderGraph);
 
+        addTemporalAntiAliasingNodes(renderGraph);
+
+        addFrameConstantsNode(renderGraph);
+
         addOutputNodes(renderGraph);
+
+        warmUpShaders();
     }
 
     private void addGBufferClearingNodes(RenderGraph renderGraph) {
@@ -121,13 +140,18 @@ public class CoreRenderingModule extends ModuleRendering {
 
     private void addSkyNodes(RenderGraph renderGraph) {
         Node lastUpdatedGBufferClearingNode = renderGraph.findNode("CoreRendering:lastUpdatedGBufferClearingNode");
+
+        SkyCubemapNode skyCubemapNode = new SkyCubemapNode("skyCubemapNode", providingModule, context);
+        renderGraph.addNode(skyCubemapNode);
+
         // TODO maybe read from both clearing nodes and output bufferpair then, created along the way,
         //  don't make them output buffer pair when they only clear 1 of the buffers. Prone to error
-        Node backdropNode = new BackdropNode("backdropNode", providingModule, context);
+        Node backdropNode = new BackdropNode("backdropNode", providingModule, context, skyCubemapNode);
         renderGraph.connectBufferPair(lastUpdatedGBufferClearingNode, 1, backdropNode, 1);
         ((AbstractNode) backdropNode).addOutputBufferPairConnection(1, lastUpdatedGBufferClearingNode.getOutputBufferPairConnection(1).getBufferPair());
 
         renderGraph.addNode(backdropNode);
+        renderGraph.connectRunOrder(skyCubemapNode, 1, backdropNode, 1);
         //renderGraph.connect(lastUpdatedGBufferClearingNode, backdropNode);
     }
 
@@ -201,15 +225,18 @@ public class CoreRenderingModule extends ModuleRendering {
         Node applyDeferredLightingNode = renderGraph.findNode("CoreRendering:applyDeferredLightingNode");
 
         FboConfig reflectedBufferConfig = new FboConfig(BackdropReflectionNode.REFLECTED_FBO_URI, HALF_SCALE, FBO.Type.DEFAULT).useDepthBuffer();
-        BufferClearingNode reflectedBufferClearingNode = new BufferClearingNode("reflectedBufferClearingNode", providingModule, context, reflectedBufferConfig,
-                displayResolutionDependentFbo, GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+        ReflectedBufferClearingNode reflectedBufferClearingNode = new ReflectedBufferClearingNode("reflectedBufferClearingNode", providingModule, context,
+                reflectedBufferConfig, displayResolutionDependentFbo, GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
         renderGraph.addNode(reflectedBufferClearingNode);
 
-        Node reflectedBackdropNode = new BackdropReflectionNode("reflectedBackdropNode", providingModule, context);
+        SkyCubemapNode skyCubemapNode = (SkyCubemapNode) renderGraph.findNode("CoreRendering:skyCubemapNode");
+        Node reflectedBackdropNode = new BackdropReflectionNode("reflectedBackdropNode", providingModule, context, skyCubemapNode,
+                reflectedBufferClearingNode);
         renderGraph.connectFbo(reflectedBufferClearingNode, 1, reflectedBackdropNode, 1);
         renderGraph.addNode(reflectedBackdropNode);
+        renderGraph.connectRunOrder(skyCubemapNode, 2, reflectedBackdropNode, 1);
 
-        Node worldReflectionNode = new WorldReflectionNode("worldReflectionNode", providingModule, context);
+        Node worldReflectionNode = new WorldReflectionNode("worldReflectionNode", providingModule, context, reflectedBufferClearingNode);
         renderGraph.connectFbo(reflectedBackdropNode, 1, worldReflectionNode, 1);
         renderGraph.addNode(worldReflectionNode);
 
@@ -218,7 +245,8 @@ public class CoreRenderingModule extends ModuleRendering {
                 context, reflectedRefractedBufferConfig, displayResolutionDependentFbo, GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
         renderGraph.addNode(reflectedRefractedBufferClearingNode);
 
-        Node chunksRefractiveReflectiveNode = new RefractiveReflectiveBlocksNode("chunksRefractiveReflectiveNode", providingModule, context);
+        Node chunksRefractiveReflectiveNode = new RefractiveReflectiveBlocksNode("chunksRefractiveReflectiveNode", providingModule, context,
+                skyCubemapNode);
         renderGraph.connectBufferPair(applyDeferredLightingNode, 1, chunksRefractiveReflectiveNode, 1);
         renderGraph.connectFbo(reflectedRefractedBufferClearingNode, 1, chunksRefractiveReflectiveNode, 1);
         renderGraph.connectFbo(worldReflectionNode, 1, chunksRefractiveReflectiveNode, 2);
@@ -358,8 +386,41 @@ public class CoreRenderingModule extends ModuleRendering {
         renderGraph.connectFbo(finalPostProcessingNode, 1, vignetteNode, 1);
     }
 
-    private void addOutputNodes(RenderGraph renderGraph) {
+    private void addTemporalAntiAliasingNodes(RenderGraph renderGraph) {
         Node finalPostProcessingNode = renderGraph.findNode("CoreRendering:finalPostProcessingNode");
+        Node vignetteNode = renderGraph.findNode("CoreRendering:vignetteNode");
+
+        TemporalAntiAliasingNode temporalAntiAliasingNode = new TemporalAntiAliasingNode("temporalAntiAliasingNode", providingModule, context);
+        renderGraph.connectBufferPair(finalPostProcessingNode, 1, temporalAntiAliasingNode, 1);
+        renderGraph.connectFbo(finalPostProcessingNode, 1, temporalAntiAliasingNode, 1);
+        renderGraph.addNode(temporalAntiAliasingNode);
+        renderGraph.connectRunOrder(vignetteNode, 1, temporalAntiAliasingNode, 1);
+
+        // The jitter must be applied to the camera before anything is rendered through it.
+        Node applyCameraJitterNode = new ApplyCameraJitterNode("applyCameraJitterNode", providingModule, context, temporalAntiAliasingNode);
+        renderGraph.addNode(applyCameraJitterNode);
+        renderGraph.connectRunOrder(applyCameraJitterNode, 1, renderGraph.findNode("CoreRendering:lastUpdatedGBufferClearingNode"), 1);
+        renderGraph.connectRunOrder(applyCameraJitterNode, 2, renderGraph.findNode("CoreRendering:staleGBufferClearingNode"), 1);
+        renderGraph.connectRunOrder(applyCameraJitterNode, 3, renderGraph.findNode("CoreRendering:reflectedBufferClearingNode"), 1);
+        renderGraph.connectRunOrder(applyCameraJitterNode, 4, renderGraph.findNode("CoreRendering:reflectedRefractedBufferClearingNode"), 1);
+    }
+
+    private void addFrameConstantsNode(RenderGraph renderGraph) {
+        Node applyCameraJitterNode = renderGraph.findNode("CoreRendering:applyCameraJitterNode");
+
+        // The frame constants include the camera matrices: they must be uploaded once the jitter has been applied,
+        // but before anything is rendered through the camera.
+        Node frameConstantsNode = new FrameConstantsNode("frameConstantsNode", providingModule, context);
+        renderGraph.addNode(frameConstantsNode);
+        renderGraph.connectRunOrder(applyCameraJitterNode, 5, frameConstantsNode, 1);
+        renderGraph.connectRunOrder(frameConstantsNode, 1, renderGraph.findNode("CoreRendering:lastUpdatedGBufferClearingNode"), 2);
+        renderGraph.connectRunOrder(frameConstantsNode, 2, renderGraph.findNode("CoreRendering:staleGBufferClearingNode"), 2);
+        renderGraph.connectRunOrder(frameConstantsNode, 3, renderGraph.findNode("CoreRendering:reflectedBufferClearingNode"), 2);
+        renderGraph.connectRunOrder(frameConstantsNode, 4, renderGraph.findNode("CoreRendering:reflectedRefractedBufferClearingNode"), 2);
+    }
+
+    private void addOutputNodes(RenderGraph renderGraph) {
+        TemporalAntiAliasingNode temporalAntiAliasingNode = (TemporalAntiAliasingNode) renderGraph.findNode("CoreRendering:temporalAntiAliasingNode");
 
 //        Node  tintNode = new TintNode("tintNode", context);
 //        tintNode.connectFbo(1, finalPostProcessingNode.getOutputFboConnection(1));
@@ -370,14 +431,44 @@ public class CoreRenderingModule extends ModuleRendering {
 
         // renderGraph.connect(finalPostProcessingNode, outputToVRFrameBufferNode);
 
-        Node outputToScreenNode = new OutputToScreenNode("outputToScreenNode", providingModule, context);
-        renderGraph.connectBufferPair(finalPostProcessingNode, 1, outputToScreenNode, 1);
-        renderGraph.connectFbo(finalPostProcessingNode, 1, outputToScreenNode, 1);
+        OutputToScreenNode outputToScreenNode = new OutputToScreenNode("outputToScreenNode", providingModule, context);
+        renderGraph.connectBufferPair(temporalAntiAliasingNode, 1, outputToScreenNode, 1);
+        renderGraph.connectFbo(temporalAntiAliasingNode, 1, outputToScreenNode, 1);
         renderGraph.addNode(outputToScreenNode);
+        temporalAntiAliasingNode.setOutputToScreenNode(outputToScreenNode);
         // renderGraph.connect(finalPostProcessingNode, outputToScreenNode);
         // renderGraph.connectFbo(finalPostProcessingNode, tintNode, outputToScreenNode);
     }
 
+    /**
+     * Makes sure the shader programs of all the materials used by the nodes are ready before the first frame.
+     * The features listed here must be kept in sync with those activated by the nodes.
+     *
+     * The materials of this module include those used by the AdvancedRenderingModule's nodes.
+     */
+    private void warmUpShaders() {
+        shaderWarmUp = new ShaderWarmUp();
+        shaderWarmUp.addModuleMaterials(providingModule);
+        shaderWarmUp.addFeatures(new ResourceUrn("CoreRendering:chunk"), ShaderProgramFeature.FEATURE_ALPHA_REJECT,
+                ShaderProgramFeature.FEATURE_REFRACTIVE_PASS, ShaderProgramFeature.FEATURE_USE_FORWARD_LIGHTING);
+        shaderWarmUp.addFeatures(new ResourceUrn("CoreRendering:lightGeometryPass"), ShaderProgramFeature.FEATURE_LIGHT_POINT,
+                ShaderProgramFeature.FEATURE_LIGHT_DIRECTIONAL);
+        shaderWarmUp.run();
+    }
+
+    /**
+     * @return the shader warm-up performed on initialisation, giving access to the time taken by each shader program.
+     */
+    public ShaderWarmUp getShaderWarmUp() {
+        return shaderWarmUp;
+    }
+
+    /**
+     * @return the ChunkLodSelector shared by the nodes rendering chunks, holding the distance culling settings.
+     */
+    public ChunkLodSelector getChunkLodSelector() {
+        return chunkLodSelector;
+    }
 
     public Camera getLightCamera() {
         // TODO Hack around our shadow node in adv. module. This ain't gonna work without adv.module
@@ -385,5 +476,26 @@ public class CoreRenderingModule extends ModuleRendering {
         return shadowMapNode.shadowMapCamera;
     }
 
+    /**
+     * @param nodeUri the uri of a node, i.e. "CoreRendering:opaqueBlocksNode"
+     * @return the node with the given uri, or null if the render graph contains no such node.
+     */
+    public Node findNode(String nodeUri) {
+        return renderGraph.findNode(nodeUri);
+    }
+
+    public DisplayResolutionDependentFbo getDisplayResolutionDependentFbo() {
+        return displayResolutionDependentFbo;
+    }
+
+    /**
+     * @return the enabled nodes of the render graph, including those added by other modules, in processing order.
+     */
+    public List<Node> getEnabledNodesInProcessingOrder() {
+        return renderGraph.getNodesInTopologicalOrder().stream()
+                .filter(Node::isEnabled)
+                .collect(Collectors.toList());
+    }
+
 
 }
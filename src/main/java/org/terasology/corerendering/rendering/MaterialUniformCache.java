@@ -0,0 +1,266 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.rendering;
+
+import org.joml.Matrix3fc;
+import org.joml.Matrix4fc;
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.engine.config.RenderingConfig;
+import org.terasology.engine.rendering.assets.material.Material;
+import org.terasology.engine.rendering.assets.shader.ShaderProgramFeature;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Sets uniforms on the currently active program of a material, skipping those whose value is unchanged
+ * since the last time they were set on that same program.
+ *
+ * Each combination of features activated on a material selects a separately compiled program, and uniform
+ * values are retained by each program independently. For this reason the values last set are remembered
+ * per material and per combination of features, and activating or deactivating a feature through this
+ * class does not require values to be set again. The remembered values are shared by all instances of this
+ * class wrapping the same material, so that nodes using the same program do not invalidate each other.
+ *
+ * The remembered values are only reliable as long as the uniforms they refer to are set exclusively through
+ * this class: uniforms also set by other means on the same program should not be set through this class.
+ * All remembered values are discarded whenever the rendering config changes, as shader programs might have
+ * been recompiled as a consequence, and whenever shaders are recompiled through the recompileShaders command.
+ * After recompiling shaders by other means, call invalidateAll().
+ *
+ * The material is only referenced weakly, so that the values remembered for it can be discarded once it is
+ * no longer in use. Instances must be disposed of once no longer needed, to stop listening to the rendering config.
+ *
+ * The number of uniform values actually set and skipped is reported to the RenderingProfiler, under the
+ * activity given on construction. See the uniformCalls command.
+ */
+public class MaterialUniformCache implements PropertyChangeListener {
+    private static final int MATRIX3_SIZE = 9;
+    private static final int MATRIX4_SIZE = 16;
+
+    private static final Map<Material, MaterialState> materialStates = new WeakHashMap<>();
+
+    private final WeakReference<Material> material;
+    private final MaterialState materialState;
+    private final RenderingActivity renderingActivity;
+    private final RenderingConfig renderingConfig;
+    private final float[] matrixValues = new float[MATRIX4_SIZE];
+
+    private int activeFeatures;
+    private ProgramState programState;
+
+    public MaterialUniformCache(Material material, RenderingActivity renderingActivity, RenderingConfig renderingConfig) {
+        this.material = new WeakReference<>(material);
+        this.renderingActivity = renderingActivity;
+        this.renderingConfig = renderingConfig;
+
+        materialState = materialStates.computeIfAbsent(material, key -> new MaterialState());
+        programState = materialState.getProgramState(activeFeatures);
+
+        renderingConfig.subscribe(this);
+    }
+
+    /**
+     * Discards the values remembered for every material, forcing them to be set again the next time.
+     */
+    public static void invalidateAll() {
+        materialStates.values().forEach(MaterialState::clear);
+    }
+
+    /**
+     * Stops listening to changes of the rendering config.
+     */
+    public void dispose() {
+        renderingConfig.unsubscribe(this);
+    }
+
+    /**
+     * @return the material, or null if it has been discarded in the meantime.
+     */
+    public Material getMaterial() {
+        return material.get();
+    }
+
+    /**
+     * Activates the given feature on the material, as Material.activateFeature(ShaderProgramFeature) does.
+     *
+     * Features activated on the material by other means are not known to this class: they must be
+     * activated and deactivated through it for the values to be remembered against the right program.
+     */
+    public void activateFeature(ShaderProgramFeature feature) {
+        Material material = getMaterial();
+        if (material != null) {
+            material.activateFeature(feature);
+        }
+        activeFeatures |= feature.getValue();
+        programState = materialState.getProgramState(activeFeatures);
+    }
+
+    public void deactivateFeature(ShaderProgramFeature feature) {
+        Material material = getMaterial();
+        if (material != null) {
+            material.deactivateFeature(feature);
+        }
+        activeFeatures &= ~feature.getValue();
+        programState = materialState.getProgramState(activeFeatures);
+    }
+
+    public void setInt(String uniformName, int value) {
+        Material material = getMaterial();
+        if (material != null && isChanged(uniformName, 1, value, 0, 0, 0)) {
+            material.setInt(uniformName, value, true);
+        }
+    }
+
+    public void setFloat(String uniformName, float value) {
+        Material material = getMaterial();
+        if (material != null && isChanged(uniformName, 1, Float.floatToRawIntBits(value), 0, 0, 0)) {
+            material.setFloat(uniformName, value, true);
+        }
+    }
+
+    public void setFloat2(String uniformName, float x, float y) {
+        Material material = getMaterial();
+        if (material != null && isChanged(uniformName, 2, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y), 0, 0)) {
+            material.setFloat2(uniformName, x, y, true);
+        }
+    }
+
+    public void setFloat3(String uniformName, float x, float y, float z) {
+        Material material = getMaterial();
+        if (material != null && isChanged(uniformName, 3, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y),
+                Float.floatToRawIntBits(z), 0)) {
+            material.setFloat3(uniformName, x, y, z, true);
+        }
+    }
+
+    public void setFloat4(String uniformName, float x, float y, float z, float w) {
+        Material material = getMaterial();
+        if (material != null && isChanged(uniformName, 4, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y),
+                Float.floatToRawIntBits(z), Float.floatToRawIntBits(w))) {
+            material.setFloat4(uniformName, x, y, z, w, true);
+        }
+    }
+
+    public void setMatrix3(String uniformName, Matrix3fc matrix) {
+        matrix.get(matrixValues);
+        Material material = getMaterial();
+        if (material != null && isMatrixChanged(uniformName, MATRIX3_SIZE)) {
+            material.setMatrix3(uniformName, matrix, true);
+        }
+    }
+
+    public void setMatrix4(String uniformName, Matrix4fc matrix) {
+        matrix.get(matrixValues);
+        Material material = getMaterial();
+        if (material != null && isMatrixChanged(uniformName, MATRIX4_SIZE)) {
+            material.setMatrix4(uniformName, matrix, true);
+        }
+    }
+
+    /**
+     * Compares the first elements of matrixValues against the values last set for the uniform on the active program,
+     * as isChanged() does for vectors.
+     */
+    private boolean isMatrixChanged(String uniformName, int elementCount) {
+        int[] lastValues = programState.lastValues.get(uniformName);
+        boolean isChanged = lastValues == null;
+        if (isChanged) {
+            lastValues = new int[elementCount];
+            programState.lastValues.put(uniformName, lastValues);
+        }
+        for (int i = 0; i < elementCount; i++) {
+            int value = Float.floatToRawIntBits(matrixValues[i]);
+            if (lastValues[i] != value) {
+                lastValues[i] = value;
+                isChanged = true;
+            }
+        }
+
+        renderingActivity.countUniformCall(!isChanged);
+        return isChanged;
+    }
+
+    /**
+     * Compares the given components against the values last set for the uniform on the active program,
+     * remembering the given ones if they differ. Floats are compared through their bits, hence e.g. 0.0 and -0.0
+     * are considered different: this might issue an unnecessary call, but never skips a necessary one.
+     */
+    private boolean isChanged(String uniformName, int componentCount, int x, int y, int z, int w) {
+        int[] lastValues = programState.lastValues.get(uniformName);
+        boolean isChanged = lastValues == null;
+        if (isChanged) {
+            lastValues = new int[componentCount];
+            programState.lastValues.put(uniformName, lastValues);
+        } else {
+            isChanged = lastValues[0] != x
+                    || componentCount > 1 && lastValues[1] != y
+                    || componentCount > 2 && lastValues[2] != z
+                    || componentCount > 3 && lastValues[3] != w;
+        }
+
+        if (isChanged) {
+            lastValues[0] = x;
+            if (componentCount > 1) {
+                lastValues[1] = y;
+            }
+            if (componentCount > 2) {
+                lastValues[2] = z;
+            }
+            if (componentCount > 3) {
+                lastValues[3] = w;
+            }
+        }
+
+        renderingActivity.countUniformCall(!isChanged);
+        return isChanged;
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        // Any of the rendering settings might have caused the shaders to be recompiled.
+        materialState.clear();
+    }
+
+    /**
+     * The values last set on each of the programs of a material.
+     *
+     * Materials have only a handful of programs in use, hence a list is searched rather than a map keyed
+     * by feature mask, which would box the mask on every lookup.
+     */
+    private static class MaterialState {
+        private final List<ProgramState> programStates = new ArrayList<>();
+
+        ProgramState getProgramState(int features) {
+            for (int i = 0; i < programStates.size(); i++) {
+                if (programStates.get(i).features == features) {
+                    return programStates.get(i);
+                }
+            }
+
+            ProgramState programState = new ProgramState(features);
+            programStates.add(programState);
+            return programState;
+        }
+
+        void clear() {
+            programStates.forEach(programState -> programState.lastValues.clear());
+        }
+    }
+
+    private static class ProgramState {
+        private final int features;
+        // Floats are stored through their bits, so that a single representation serves all uniform types.
+        private final Map<String, int[]> lastValues = new HashMap<>();
+
+        ProgramState(int features) {
+            this.features = features;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.rendering;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.corerendering.rendering.dag.nodes.FrameConstantsNode;
+import org.terasology.engine.rendering.assets.material.Material;
+import org.terasology.engine.rendering.assets.shader.ShaderProgramFeature;
+import org.terasology.engine.utilities.Assets;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.naming.Name;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL20.GL_CURRENT_PROGRAM;
+import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
+import static org.lwjgl.opengl.GL20.glGetProgrami;
+import static org.lwjgl.opengl.GL20.glUseProgram;
+
+/**
+ * Makes sure every shader program the rendering nodes may use is ready before the first frame is rendered.
+ *
+ * Shader programs are compiled and linked by the engine, but drivers commonly defer part of that work until
+ * a program is first used, and rendering nodes activate some material features only in given circumstances,
+ * i.e. when the player dives into water. Without a warm-up, the first use of each program results in a hitch.
+ *
+ * Each material is warmed up in its default permutation and in the permutations obtained by activating,
+ * one at a time, the features the rendering nodes are known to activate on it.
+ *
+ * Rendering settings such as normal mapping, parallax mapping, SSAO or bloom are not features: the engine turns
+ * them into defines when compiling the shaders, and compiles all shaders again whenever they change. Only the
+ * programs matching the current settings exist, hence only those are warmed up. Programs compiled after a change
+ * of these settings are not warmed up.
+ *
+ * Binding the program of a permutation makes the driver resume any work it deferred, and waits for it:
+ * the programs are completed one after the other. The material API exposes a program only by binding it,
+ * hence the warm-up cannot leave the programs to complete in parallel and poll their status instead.
+ *
+ * Must be used from the thread owning the OpenGL context.
+ */
+public class ShaderWarmUp {
+    private static final Logger logger = LoggerFactory.getLogger(ShaderWarmUp.class);
+
+    private final List<Permutation> permutations = new ArrayList<>();
+    private final List<Permutation> warmedUpPermutations = new ArrayList<>();
+
+    private float totalMilliseconds;
+
+    /**
+     * Adds the default permutation of every material provided by the given module.
+     */
+    public void addModuleMaterials(Name moduleName) {
+        for (ResourceUrn materialUrn : Assets.list(Material.class)) {
+            if (materialUrn.getModuleName().equals(moduleName)) {
+                permutations.add(new Permutation(materialUrn, null));
+            }
+        }
+    }
+
+    /**
+     * Adds the permutations of the given material obtained by activating each of the given features on its own.
+     */
+    public void addFeatures(ResourceUrn materialUrn, ShaderProgramFeature... features) {
+        for (ShaderProgramFeature feature : features) {
+            permutations.add(new Permutation(materialUrn, feature));
+        }
+    }
+
+    /**
+     * Warms up all the permutations added so far, then logs the time taken.
+     */
+    public void run() {
+        long startNanoseconds = System.nanoTime();
+
+        for (Permutation permutation : permutations) {
+            Material material = Assets.get(permutation.materialUrn, Material.class).orElse(null);
+            if (material == null) {
+                logger.warn("Cannot warm up {}: material not found", permutation);
+                continue;
+            }
+
+            long permutationStartNanoseconds = System.nanoTime();
+            if (permutation.feature != null) {
+                material.activateFeature(permutation.feature);
+            }
+            material.enable();
+            int program = glGetInteger(GL_CURRENT_PROGRAM);
+            if (permutation.feature != null) {
+                material.deactivateFeature(permutation.feature);
+            }
+
+            if (program != 0 && glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE) {
+                logger.warn("Shader program of {} failed to link", permutation);
+            } else if (program != 0 && !FrameConstantsNode.checkBlockLayout(program)) {
+                logger.warn("Shader program of {} declares the {} uniform block out of step with the FrameConstantsNode",
+                        permutation, FrameConstantsNode.FRAME_CONSTANTS_BLOCK);
+            }
+            permutation.milliseconds = (System.nanoTime() - permutationStartNanoseconds) / 1_000_000.0f;
+            warmedUpPermutations.add(permutation);
+            logger.debug("Warmed up {} in {} ms", permutation, permutation.milliseconds);
+        }
+        glUseProgram(0);
+        permutations.clear();
+
+        totalMilliseconds = (System.nanoTime() - startNanoseconds) / 1_000_000.0f;
+        logger.info("Warmed up {} shader programs in {} ms", warmedUpPermutations.size(), totalMilliseconds);
+    }
+
+    /**
+     * @return the permutations warmed up so far, in order, together with the time taken by each.
+     */
+    public List<Permutation> getWarmedUpPermutations() {
+        return Collections.unmodifiableList(warmedUpPermutations);
+    }
+
+    /**
+     * @return the time elapsed between the start of the warm-up and its end, in milliseconds.
+     */
+    public float getTotalMilliseconds() {
+        return totalMilliseconds;
+    }
+
+    /**
+     * A material together with the feature, if any, activated on it.
+     *
+     * The time taken by a permutation runs from the moment its feature is activated to the moment its program
+     * is bound and found to be linked.
+     */
+    public static final class Permutation {
+        private final ResourceUrn materialUrn;
+        private final ShaderProgramFeature feature;
+        private float milliseconds;
+
+        private Permutation(ResourceUrn materialUrn, ShaderProgramFeature feature) {
+            this.materialUrn = materialUrn;
+            this.feature = feature;
+        }
+
+        public float getMilliseconds() {
+            return milliseconds;
+        }
+
+        @Override
+        public String toString() {
+            return feature != null ? materialUrn + "[" + feature + "]" : materialUrn.toString();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.rendering;
+
+import org.terasology.engine.core.SimpleUri;
+import org.terasology.engine.rendering.dag.Node;
+import org.terasology.engine.rendering.dag.StateChange;
+import org.terasology.engine.rendering.dag.dependencyConnections.DependencyConnection;
+import org.terasology.engine.rendering.dag.stateChanges.BindFbo;
+import org.terasology.engine.rendering.dag.stateChanges.EnableMaterial;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the OpenGL state changes resulting from a given order of the rendering nodes, and looks for an order
+ * of the nodes requiring fewer of them.
+ *
+ * The estimate follows the way the engine turns the nodes into a task list: a state change desired by a node
+ * is skipped if the previous node desired the same one, and a state change desired by the previous node is
+ * reset to its default unless the node desires a state change of the same kind.
+ *
+ * The alternative order is obtained greedily: among the nodes whose dependencies have already been processed,
+ * the one requiring the cheapest transition from the last node is picked next, ties being resolved in favour
+ * of the original order. FBO bindings and material changes are considered more expensive than other state changes.
+ * Dependencies are those expressed through the node connections, run order connections included. Nodes relying
+ * on an order not expressed through connections are not accounted for, hence the alternative order is meant
+ * as a hint to the authors of the render graph rather than something to be applied blindly.
+ */
+public final class StateChangeAnalysis {
+    private static final int EXPENSIVE_STATE_CHANGE_WEIGHT = 4;
+
+    private StateChangeAnalysis() {
+    }
+
+    /**
+     * @param nodes the nodes in the order they are processed, i.e. RenderGraph.getNodesInTopologicalOrder()
+     */
+    public static String report(List<Node> nodes) {
+        List<Node> reorderedNodes = reorder(nodes);
+
+        Counts before = count(nodes);
+        Counts after = count(reorderedNodes);
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-36s %8s %8s%n", "", "current", "reordered"));
+        report.append(String.format("%-36s %8d %8d%n", "state changes desired by the nodes", before.desired, after.desired));
+        report.append(String.format("%-36s %8d %8d%n", "redundant across adjacent nodes", before.redundant, after.redundant));
+        report.append(String.format("%-36s %8d %8d%n", "state changes issued", before.issued, after.issued));
+        report.append(String.format("%-36s %8d %8d%n", "of which FBO bindings", before.fboBindings, after.fboBindings));
+        report.append(String.format("%-36s %8d %8d%n", "of which material changes", before.materialChanges, after.materialChanges));
+
+        if (!reorderedNodes.equals(nodes)) {
+            report.append(String.format("%nReordered nodes:%n"));
+            for (Node node : reorderedNodes) {
+                report.append(node.getUri()).append(String.format("%n"));
+            }
+        }
+        return report.toString();
+    }
+
+    static Counts count(List<Node> nodes) {
+        Counts counts = new Counts();
+        Set<StateChange> previousStateChanges = Collections.emptySet();
+
+        for (Node node : nodes) {
+            Set<StateChange> stateChanges = node.getDesiredStateChanges();
+            counts.desired += stateChanges.size();
+
+            for (StateChange stateChange : stateChanges) {
+                if (previousStateChanges.contains(stateChange)) {
+                    counts.redundant++;
+                } else {
+                    counts.add(stateChange);
+                }
+            }
+            for (StateChange stateChange : previousStateChanges) {
+                if (!containsKindOf(stateChanges, stateChange)) {
+                    counts.add(stateChange);
+                }
+            }
+
+            previousStateChanges = stateChanges;
+        }
+
+        // After the last node, everything is reset to its default.
+        previousStateChanges.forEach(counts::add);
+        return counts;
+    }
+
+    static List<Node> reorder(List<Node> nodes) {
+        Map<Node, Set<Node>> dependencies = findDependencies(nodes);
+
+        List<Node> remainingNodes = new ArrayList<>(nodes);
+        List<Node> reorderedNodes = new ArrayList<>(nodes.size());
+        Set<Node> processedNodes = new HashSet<>();
+        Set<StateChange> previousStateChanges = Collections.emptySet();
+
+        while (!remainingNodes.isEmpty()) {
+            Node nextNode = null;
+            int lowestCost = Integer.MAX_VALUE;
+
+            for (Node node : remainingNodes) {
+                if (!processedNodes.containsAll(dependencies.get(node))) {
+                    continue;
+                }
+
+                int cost = getTransitionCost(previousStateChanges, node.getDesiredStateChanges());
+                if (cost < lowestCost) {
+                    nextNode = node;
+                    lowestCost = cost;
+                }
+            }
+
+            if (nextNode == null) {
+                // Only possible if the dependencies contain a cycle, in which case the original order is kept.
+                return nodes;
+            }
+
+            remainingNodes.remove(nextNode);
+            reorderedNodes.add(nextNode);
+            processedNodes.add(nextNode);
+            previousStateChanges = nextNode.getDesiredStateChanges();
+        }
+
+        return reorderedNodes;
+    }
+
+    private static int getTransitionCost(Set<StateChange> previousStateChanges, Set<StateChange> stateChanges) {
+        int cost = 0;
+        for (StateChange stateChange : stateChanges) {
+            if (!previousStateChanges.contains(stateChange)) {
+                cost += getWeight(stateChange);
+            }
+        }
+        for (StateChange stateChange : previousStateChanges) {
+            if (!containsKindOf(stateChanges, stateChange)) {
+                cost += getWeight(stateChange);
+            }
+        }
+        return cost;
+    }
+
+    private static int getWeight(StateChange stateChange) {
+        return stateChange instanceof BindFbo || stateChange instanceof EnableMaterial ? EXPENSIVE_STATE_CHANGE_WEIGHT : 1;
+    }
+
+    /**
+     * @return true if the given state changes include one resetting, or overriding, the same state as the given one.
+     */
+    private static boolean containsKindOf(Set<StateChange> stateChanges, StateChange stateChange) {
+        StateChange defaultInstance = stateChange.getDefaultInstance();
+        for (StateChange candidate : stateChanges) {
+            if (candidate.getDefaultInstance().equals(defaultInstance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return for each of the given nodes, the nodes among them it is connected to through its input connections.
+     */
+    private static Map<Node, Set<Node>> findDependencies(List<Node> nodes) {
+        Map<SimpleUri, Node> nodesByUri = new HashMap<>();
+        for (Node node : nodes) {
+            nodesByUri.put(node.getUri(), node);
+        }
+
+        Map<Node, Set<Node>> dependencies = new HashMap<>();
+        for (Node node : nodes) {
+            Set<Node> nodeDependencies = new HashSet<>();
+            for (DependencyConnection inputConnection : getConnections(node.getInputConnections())) {
+                for (DependencyConnection connectedConnection : getConnections(inputConnection.getConnectedConnections())) {
+                    Node dependency = nodesByUri.get(connectedConnection.getParentNode());
+                    if (dependency != null && dependency != node) {
+                        nodeDependencies.add(dependency);
+                    }
+                }
+            }
+            dependencies.put(node, nodeDependencies);
+        }
+        return dependencies;
+    }
+
+    private static Collection<DependencyConnection> getConnections(Map<String, DependencyConnection> connections) {
+        return connections != null ? connections.values() : Collections.emptyList();
+    }
+
+    static class Counts {
+        int desired;
+        int redundant;
+        int issued;
+        int fboBindings;
+        int materialChanges;
+
+        void add(StateChange stateChange) {
+            issued++;
+            if (stateChange instanceof BindFbo) {
+                fboBindings++;
+            } else if (stateChange instanceof EnableMaterial) {
+                materialChanges++;
+            }
+        }
+    }
+}
@@ -5,11 +5,13 @@ package org.terasology.corerendering.rendering.dag.nodes;
 import org.joml.Matrix3f;
 import org.joml.Matrix4f;
 import org.joml.Vector3fc;
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.corerendering.monitoring.RenderingProfiler;
+import org.terasology.corerendering.rendering.ChunkLodSelector;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.config.RenderingDebugConfig;
 import org.terasology.engine.context.Context;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.shader.ShaderProgramFeature;
 import org.terasology.engine.rendering.cameras.SubmersibleCamera;
@@ -25,7 +27,6 @@ import org.terasology.engine.rendering.dag.stateChanges.SetWireframe;
 import org.terasology.engine.rendering.primitives.ChunkMesh;
 import org.terasology.engine.rendering.world.RenderQueuesHelper;
 import org.terasology.engine.rendering.world.WorldRenderer;
-import org.terasology.engine.world.WorldProvider;
 import org.terasology.engine.world.chunks.RenderableChunk;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.naming.Name;
@@ -46,14 +47,23 @@ import static org.terasology.engine.rendering.primitives.ChunkMesh.RenderPhase.A
  * This is a less expensive way to render semi-transparent objects compared to alpha-blending.
  * In alpha-blending the color of a semi-transparent fragment is combined with
  * the color stored in the frame buffer and the resulting color overwrites the previously stored one.
+ *
+ * Chunks at ChunkLodSelector.LOW_DETAIL are skipped: at that distance foliage and plants cover a handful
+ * of pixels each, while their triangles make up a large share of those rendered. This removes leaves from
+ * distant trees as well, hence the level is only reached once enabled in OpaqueBlocksNode.
  */
 public class AlphaRejectBlocksNode extends AbstractNode implements WireframeCapable, PropertyChangeListener {
     private static final ResourceUrn CHUNK_MATERIAL_URN = new ResourceUrn("CoreRendering:chunk");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private final Matrix4f modelViewMatrix = new Matrix4f();
+    private final Matrix3f normalMatrix = new Matrix3f();
+
     private WorldRenderer worldRenderer;
     private RenderQueuesHelper renderQueues;
     private RenderingConfig renderingConfig;
-    private WorldProvider worldProvider;
+    private ChunkLodSelector chunkLodSelector;
 
     private Material chunkMaterial;
     private SetWireframe wireframeStateChange;
@@ -77,7 +87,7 @@ public class AlphaRejectBlocksNode extends AbstractNode implements WireframeCapa
         super(nodeUri, providingModule, context);
 
         renderQueues = context.get(RenderQueuesHelper.class);
-        worldProvider = context.get(WorldProvider.class);
+        chunkLodSelector = context.get(ChunkLodSelector.class);
         addOutputBufferPairConnection(1);
         worldRenderer = context.get(WorldRenderer.class);
     }
@@ -146,14 +156,10 @@ public class AlphaRejectBlocksNode extends AbstractNode implements WireframeCapa
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         chunkMaterial.activateFeature(ShaderProgramFeature.FEATURE_ALPHA_REJECT);
 
-        // Common Shader Parameters
-
-        chunkMaterial.setFloat("time", worldProvider.getTime().getDays(), true);
-
         // Specific Shader Parameters
 
         // TODO: This is necessary right now because activateFeature removes all material parameters.
@@ -168,8 +174,6 @@ public class AlphaRejectBlocksNode extends AbstractNode implements WireframeCapa
             chunkMaterial.setFloat4("parallaxProperties", parallaxBias, parallaxScale, 0.0f, 0.0f, true);
         }
 
-        chunkMaterial.setFloat("clip", 0.0f, true);
-
         // Actual Node Processing
 
         final org.joml.Vector3f cameraPosition = activeCamera.getPosition();
@@ -177,28 +181,29 @@ public class AlphaRejectBlocksNode extends AbstractNode implements WireframeCapa
         int numberOfRenderedTriangles = 0;
         int numberOfChunksThatAreNotReadyYet = 0;
 
-        Matrix4f modelViewMatrix = new Matrix4f();
-        Matrix4f model = new Matrix4f();
-        Matrix3f normalMatrix = new Matrix3f();
-        chunkMaterial.setMatrix4("projectionMatrix", activeCamera.getProjectionMatrix(), true);
-
         while (renderQueues.chunksAlphaReject.size() > 0) {
             RenderableChunk chunk = renderQueues.chunksAlphaReject.poll();
 
+            int lodLevel = chunkLodSelector.getLevel(chunk, cameraPosition);
+            if (lodLevel == ChunkLodSelector.LOW_DETAIL) {
+                continue;
+            }
+
             if (chunk.hasMesh()) {
                 final ChunkMesh chunkMesh = chunk.getMesh();
                 final Vector3fc chunkPosition = chunk.getRenderPosition();
 
                 chunkMesh.updateMaterial(chunkMaterial, chunkPosition, chunk.isAnimated());
 
-                model.setTranslation(chunkPosition.x() - cameraPosition.x(),
+                modelViewMatrix.set(activeCamera.getViewMatrix()).translate(chunkPosition.x() - cameraPosition.x(),
                         chunkPosition.y() - cameraPosition.y(),
                         chunkPosition.z() - cameraPosition.z());
-                modelViewMatrix.set(activeCamera.getViewMatrix()).mul(model);
 
                 chunkMaterial.setMatrix4("modelViewMatrix", modelViewMatrix, true);
                 chunkMaterial.setMatrix3("normalMatrix", modelViewMatrix.normal(normalMatrix), true);
-                numberOfRenderedTriangles += chunkMesh.render(ALPHA_REJECT);
+                int numberOfChunkTriangles = chunkMesh.render(ALPHA_REJECT);
+                numberOfRenderedTriangles += numberOfChunkTriangles;
+                renderingActivity.countTriangles(lodLevel, numberOfChunkTriangles);
 
             } else {
                 numberOfChunksThatAreNotReadyYet++; // TODO: verify - should we count them only in ChunksOpaqueNode?
@@ -206,11 +211,12 @@ public class AlphaRejectBlocksNode extends AbstractNode implements WireframeCapa
         }
 
         worldRenderer.increaseTrianglesCount(numberOfRenderedTriangles);
+        RenderingProfiler.addTriangles(numberOfRenderedTriangles);
         worldRenderer.increaseNotReadyChunkCount(numberOfChunksThatAreNotReadyYet);
 
         chunkMaterial.deactivateFeature(ShaderProgramFeature.FEATURE_ALPHA_REJECT);
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     @Override
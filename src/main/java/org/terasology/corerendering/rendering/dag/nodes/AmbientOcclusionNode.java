@@ -4,16 +4,15 @@ package org.terasology.corerendering.rendering.dag.nodes;
 
 import org.joml.Vector3f;
 import org.lwjgl.BufferUtils;
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.assets.texture.Texture;
 import org.terasology.engine.rendering.assets.texture.TextureData;
-import org.terasology.engine.rendering.cameras.Camera;
 import org.terasology.engine.rendering.dag.ConditionDependentNode;
 import org.terasology.engine.rendering.dag.dependencyConnections.BufferPairConnection;
 import org.terasology.engine.rendering.dag.stateChanges.BindFbo;
@@ -66,6 +65,8 @@ public class AmbientOcclusionNode extends ConditionDependentNode {
     private static final ResourceUrn SSAO_MATERIAL_URN = new ResourceUrn("CoreRendering:ssao");
     private static final float NOISE_TEXEL_SIZE = 0.25f;
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private Material ssaoMaterial;
     private float outputFboWidth;
     private float outputFboHeight;
@@ -79,8 +80,6 @@ public class AmbientOcclusionNode extends ConditionDependentNode {
 
     private FBO ssaoFbo;
 
-    private Camera activeCamera;
-
     private final Random randomGenerator = new FastRandom();
 
     private FloatBuffer ssaoSamples;
@@ -89,15 +88,12 @@ public class AmbientOcclusionNode extends ConditionDependentNode {
     public AmbientOcclusionNode(String nodeUri, Name providingModule, Context context) {
         super(nodeUri, providingModule, context);
 
-        activeCamera = worldRenderer.getActiveCamera();
-
         RenderingConfig renderingConfig = context.get(Config.class).getRendering();
         renderingConfig.subscribe(RenderingConfig.SSAO, this);
         requiresCondition(renderingConfig::isSsao);
         addOutputFboConnection(1);
         addOutputBufferPairConnection(1);
 
-
         this.renderQuad = Assets.get(new ResourceUrn("engine:ScreenQuad"), Mesh.class)
                 .orElseThrow(() -> new RuntimeException("Failed to resolve render Quad"));
     }
@@ -142,13 +138,10 @@ public class AmbientOcclusionNode extends ConditionDependentNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         ssaoMaterial.setFloat4("ssaoSettings", ssaoStrength, ssaoRad, 0.0f, 0.0f, true);
 
-        ssaoMaterial.setMatrix4("invProjMatrix", activeCamera.getInverseProjectionMatrix(), true);
-        ssaoMaterial.setMatrix4("projMatrix", activeCamera.getProjectionMatrix(), true);
-
         ssaoMaterial.setFloat2("texelSize", 1.0f / outputFboWidth, 1.0f / outputFboHeight, true);
         ssaoMaterial.setFloat2("noiseTexelSize", NOISE_TEXEL_SIZE, NOISE_TEXEL_SIZE, true);
 
@@ -156,7 +149,7 @@ public class AmbientOcclusionNode extends ConditionDependentNode {
 
         this.renderQuad.render();
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     @Override
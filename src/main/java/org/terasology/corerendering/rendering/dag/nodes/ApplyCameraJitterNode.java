@@ -0,0 +1,43 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.rendering.dag.nodes;
+
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.engine.context.Context;
+import org.terasology.engine.rendering.dag.AbstractNode;
+import org.terasology.gestalt.naming.Name;
+
+/**
+ * An instance of this node offsets the projection of the active camera by a sub-pixel amount, different every frame,
+ * as required by the TemporalAntiAliasingNode it is paired with.
+ *
+ * Notice that while this node alters the active camera, it doesn't actually render anything. To be effective
+ * it must run before any node rendering through the active camera: see the run order connections established
+ * in CoreRenderingModule.
+ */
+public class ApplyCameraJitterNode extends AbstractNode {
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private final TemporalAntiAliasingNode temporalAntiAliasingNode;
+
+    public ApplyCameraJitterNode(String nodeUri, Name providingModule, Context context,
+                                 TemporalAntiAliasingNode temporalAntiAliasingNode) {
+        super(nodeUri, providingModule, context);
+
+        this.temporalAntiAliasingNode = temporalAntiAliasingNode;
+    }
+
+    @Override
+    public void setDependencies(Context context) {
+
+    }
+
+    @Override
+    public void process() {
+        renderingActivity.start();
+
+        temporalAntiAliasingNode.jitterActiveCamera();
+
+        renderingActivity.end();
+    }
+}
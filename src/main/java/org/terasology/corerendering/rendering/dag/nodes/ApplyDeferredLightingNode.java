@@ -2,11 +2,11 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.utilities.Assets;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.engine.context.Context;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.gestalt.naming.Name;
 import org.terasology.engine.rendering.dag.dependencyConnections.BufferPairConnection;
 import org.terasology.engine.rendering.dag.dependencyConnections.DependencyConnection;
@@ -31,6 +31,9 @@ import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFr
  */
 public class ApplyDeferredLightingNode extends AbstractNode {
     private static final ResourceUrn DEFERRED_LIGHTING_MATERIAL_URN = new ResourceUrn("CoreRendering:lightBufferPass");
+
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private Mesh renderQuad;
 
     public ApplyDeferredLightingNode(String nodeUri, Name providingModule, Context context) {
@@ -76,12 +79,12 @@ public class ApplyDeferredLightingNode extends AbstractNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         // Actual Node Processing
 
         renderQuad.render();
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 }
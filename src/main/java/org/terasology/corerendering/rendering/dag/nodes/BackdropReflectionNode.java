@@ -2,14 +2,12 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
-import org.joml.Vector3f;
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.assets.mesh.SphereBuilder;
-import org.terasology.engine.rendering.backdrop.BackdropProvider;
 import org.terasology.engine.rendering.cameras.Camera;
 import org.terasology.engine.rendering.cameras.SubmersibleCamera;
 import org.terasology.engine.rendering.dag.AbstractNode;
@@ -18,7 +16,6 @@ import org.terasology.engine.rendering.dag.stateChanges.DisableDepthWriting;
 import org.terasology.engine.rendering.dag.stateChanges.EnableFaceCulling;
 import org.terasology.engine.rendering.dag.stateChanges.EnableMaterial;
 import org.terasology.engine.rendering.dag.stateChanges.ReflectedCamera;
-import org.terasology.engine.rendering.dag.stateChanges.SetInputTexture2D;
 import org.terasology.engine.rendering.dag.stateChanges.SetViewportToSizeOf;
 import org.terasology.engine.rendering.opengl.FBO;
 import org.terasology.engine.rendering.world.WorldRenderer;
@@ -27,7 +24,13 @@ import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.naming.Name;
 import org.terasology.nui.properties.Range;
 
-import static org.terasology.corerendering.rendering.dag.nodes.BackdropNode.getAllWeatherZenith;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glDisable;
+import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL32.GL_TEXTURE_CUBE_MAP_SEAMLESS;
 
 /**
  * An instance of this class is responsible for rendering a reflected backdrop (usually the sky) into the
@@ -48,7 +51,10 @@ public class BackdropReflectionNode extends AbstractNode {
     private static final int SLICES = 16;
     private static final int STACKS = 128;
 
-    private BackdropProvider backdropProvider;
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private final SkyCubemapNode skyCubemapNode;
+    private final ReflectedBufferClearingNode reflectedBufferClearingNode;
     private Material skyMaterial;
 
     @SuppressWarnings("FieldCanBeLocal")
@@ -57,17 +63,6 @@ public class BackdropReflectionNode extends AbstractNode {
     @SuppressWarnings("FieldCanBeLocal")
     @Range(min = 1.0f, max = 8192.0f)
     private float moonExponent = 256.0f;
-    @SuppressWarnings("FieldCanBeLocal")
-    @Range(min = 0.0f, max = 10.0f)
-    private float skyDaylightBrightness = 0.6f;
-    @SuppressWarnings("FieldCanBeLocal")
-    @Range(min = 0.0f, max = 10.0f)
-    private float skyNightBrightness = 1.0f;
-
-    @SuppressWarnings("FieldCanBeLocal")
-    private Vector3f sunDirection;
-    @SuppressWarnings("FieldCanBeLocal")
-    private float turbidity;
 
     private final Mesh sphereMesh;
     private final WorldRenderer renderer;
@@ -79,8 +74,11 @@ public class BackdropReflectionNode extends AbstractNode {
      *
      * This method also requests the material using the "sky" shaders (vertex, fragment) to be enabled.
      */
-    public BackdropReflectionNode(String nodeUri, Name providingModule, Context context) {
+    public BackdropReflectionNode(String nodeUri, Name providingModule, Context context, SkyCubemapNode skyCubemapNode,
+                                  ReflectedBufferClearingNode reflectedBufferClearingNode) {
         super(nodeUri, providingModule, context);
+        this.skyCubemapNode = skyCubemapNode;
+        this.reflectedBufferClearingNode = reflectedBufferClearingNode;
         addOutputFboConnection(1);
         renderer = context.get(WorldRenderer.class);
 
@@ -95,8 +93,6 @@ public class BackdropReflectionNode extends AbstractNode {
 
     @Override
     public void setDependencies(Context context) {
-        backdropProvider = context.get(BackdropProvider.class);
-
         SubmersibleCamera activeCamera = renderer.getActiveCamera();
         addDesiredStateChange(new ReflectedCamera(activeCamera));
 
@@ -109,10 +105,6 @@ public class BackdropReflectionNode extends AbstractNode {
         addDesiredStateChange(new EnableMaterial(SKY_MATERIAL_URN));
 
         skyMaterial = getMaterial(SKY_MATERIAL_URN);
-
-        int textureSlot = 0;
-        addDesiredStateChange(new SetInputTexture2D(textureSlot++, "engine:sky90", SKY_MATERIAL_URN, "texSky90"));
-        addDesiredStateChange(new SetInputTexture2D(textureSlot, "engine:sky180", SKY_MATERIAL_URN, "texSky180"));
     }
 
     /**
@@ -121,34 +113,35 @@ public class BackdropReflectionNode extends AbstractNode {
      *
      * Notice that this method clears the FBO, both its color and depth attachments. Earlier nodes using the
      * same buffers beware.
+     *
+     * Nothing is rendered in the frames in which the ReflectedBufferClearingNode keeps the previous reflection.
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        if (!reflectedBufferClearingNode.isUpdatingReflection()) {
+            return;
+        }
 
-        // Common Shader Parameters
-
-        sunDirection = backdropProvider.getSunDirection(false);
-        turbidity = backdropProvider.getTurbidity();
-
-        skyMaterial.setFloat("daylight", backdropProvider.getDaylight(), true);
-        skyMaterial.setFloat3("sunVec", sunDirection, true);
+        renderingActivity.start();
 
         // Specific Shader Parameters
 
-        skyMaterial.setFloat3("zenith", getAllWeatherZenith(sunDirection.y, turbidity), true);
-        skyMaterial.setFloat("turbidity", turbidity, true);
-        skyMaterial.setFloat("colorExp", backdropProvider.getColorExp(), true);
-        skyMaterial.setFloat4("skySettings", sunExponent, moonExponent, skyDaylightBrightness, skyNightBrightness, true);
+        glActiveTexture(GL_TEXTURE0);
+        glBindTexture(GL_TEXTURE_CUBE_MAP, skyCubemapNode.getCubemap());
+        glEnable(GL_TEXTURE_CUBE_MAP_SEAMLESS);
+        skyMaterial.setInt("skyCubemap", 0, true);
+        skyMaterial.setFloat2("highlightSettings", sunExponent, moonExponent, true);
 
         Camera camera = renderer.getActiveCamera();
-        skyMaterial.setMatrix4("projectionMatrix", camera.getProjectionMatrix());
         skyMaterial.setMatrix4("modelViewMatrix", camera.getNormViewMatrix());
 
         // Actual Node Processing
 
         sphereMesh.render();
 
-        PerformanceMonitor.endActivity();
+        glDisable(GL_TEXTURE_CUBE_MAP_SEAMLESS);
+        glBindTexture(GL_TEXTURE_CUBE_MAP, 0);
+
+        renderingActivity.end();
     }
 }
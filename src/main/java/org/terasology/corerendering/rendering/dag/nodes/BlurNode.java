@@ -2,11 +2,11 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.utilities.Assets;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.engine.context.Context;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.gestalt.naming.Name;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.dag.ConditionDependentNode;
@@ -23,6 +23,8 @@ import org.terasology.engine.rendering.opengl.FBO;
 public class BlurNode extends ConditionDependentNode {
     private static final ResourceUrn BLUR_MATERIAL_URN = new ResourceUrn("CoreRendering:blur");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     protected float blurRadius;
 
     private Material blurMaterial;
@@ -65,7 +67,7 @@ public class BlurNode extends ConditionDependentNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         // TODO: these shader-related operations should go in their own StateChange implementations
         blurMaterial.setFloat("radius", blurRadius, true);
@@ -76,7 +78,7 @@ public class BlurNode extends ConditionDependentNode {
 
         renderQuad.render();
 
-       PerformanceMonitor.endActivity();
+       renderingActivity.end();
     }
 
 }
@@ -2,11 +2,11 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.dag.ConditionDependentNode;
@@ -46,6 +46,8 @@ public class BlurredAmbientOcclusionNode extends ConditionDependentNode {
     public static final SimpleUri SSAO_BLURRED_FBO_URI = new SimpleUri("engine:fbo.ssaoBlurred");
     private static final ResourceUrn SSAO_BLURRED_MATERIAL_URN = new ResourceUrn("CoreRendering:ssaoBlur");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private Material ssaoBlurredMaterial;
     private Mesh renderQuad;
     private float outputFboWidth;
@@ -94,13 +96,13 @@ public class BlurredAmbientOcclusionNode extends ConditionDependentNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         ssaoBlurredMaterial.setFloat2("texelSize", 1.0f / outputFboWidth, 1.0f / outputFboHeight, true);
 
         this.renderQuad.render();
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     @Override
@@ -3,12 +3,12 @@
 package org.terasology.corerendering.rendering.dag.nodes;
 
 import org.joml.Vector3f;
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.corerendering.rendering.CoreRenderingModule;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.module.rendering.RenderingModuleRegistry;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.assets.shader.ShaderProgramFeature;
@@ -28,15 +28,38 @@ import org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo;
 import org.terasology.engine.rendering.logic.LightComponent;
 import org.terasology.engine.rendering.opengl.FBO;
 import org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo;
+import org.terasology.engine.rendering.opengl.fbms.ImmutableFbo;
 import org.terasology.engine.rendering.opengl.fbms.ShadowMapResolutionDependentFbo;
 import org.terasology.engine.rendering.world.WorldRenderer;
 import org.terasology.engine.utilities.Assets;
-import org.terasology.engine.world.WorldProvider;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.naming.Name;
+import org.terasology.nui.properties.Checkbox;
+import org.terasology.nui.properties.Range;
 
+import static org.lwjgl.opengl.GL11.GL_LEQUAL;
+import static org.lwjgl.opengl.GL11.GL_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_LINEAR_MIPMAP_LINEAR;
 import static org.lwjgl.opengl.GL11.GL_ONE;
 import static org.lwjgl.opengl.GL11.GL_ONE_MINUS_SRC_COLOR;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_BORDER_COLOR;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_S;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_T;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL13.GL_CLAMP_TO_BORDER;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL14.GL_TEXTURE_COMPARE_FUNC;
+import static org.lwjgl.opengl.GL14.GL_TEXTURE_COMPARE_MODE;
+import static org.lwjgl.opengl.GL30.GL_COMPARE_REF_TO_TEXTURE;
+import static org.lwjgl.opengl.GL33.glBindSampler;
+import static org.lwjgl.opengl.GL33.glDeleteSamplers;
+import static org.lwjgl.opengl.GL33.glGenSamplers;
+import static org.lwjgl.opengl.GL33.glSamplerParameterfv;
+import static org.lwjgl.opengl.GL33.glSamplerParameteri;
 import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo.FboTexturesTypes.DepthStencilTexture;
 import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo.FboTexturesTypes.LightAccumulationTexture;
 import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo.FboTexturesTypes.NormalsTexture;
@@ -53,14 +76,28 @@ import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFr
  *
  * Eventually the content of the light accumulation buffer is combined with other buffers to correctly
  * light up the 3d scene.
+ *
+ * The shadow map is sampled through a sampler object performing the depth comparison in hardware, with linear
+ * filtering, so that each fetch already averages 2x2 texels. With PCF filtering enabled, the shader takes
+ * shadowFilterTaps such fetches over a rotated Poisson disk. Beyond the shadow map's borders everything is lit.
+ *
+ * Alternatively, with momentShadows enabled, the shadows are looked up in the blurred and mipmapped moments
+ * produced by the ShadowMomentsNodes, with a single trilinear fetch per pixel. The moments are bound by hand,
+ * as they are only allocated while in use. Until they have been rendered and mipmapped once, the shadow map is
+ * sampled instead.
  */
 public class DeferredMainLightNode extends AbstractNode {
     private static final ResourceUrn LIGHT_GEOMETRY_MATERIAL_URN = new ResourceUrn("CoreRendering:lightGeometryPass");
+    private static final int SHADOW_MAP_TEXTURE_SLOT = 3;
+    private static final int SHADOW_MOMENTS_TEXTURE_SLOT = 5;
+
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
 
     private BackdropProvider backdropProvider;
     private RenderingConfig renderingConfig;
-    private WorldProvider worldProvider;
     private CoreRenderingModule coreRendering;
+    private ShadowMapResolutionDependentFbo shadowMapResolutionDependentFbo;
+    private ImmutableFbo immutableFbo;
 
     private LightComponent mainLightComponent = new LightComponent();
 
@@ -77,12 +114,30 @@ public class DeferredMainLightNode extends AbstractNode {
     @SuppressWarnings("FieldCanBeLocal")
     private Vector3f mainLightInViewSpace = new Vector3f();
 
+    private final int shadowMapSampler;
+    private final int shadowMomentsSampler;
+
+    @Checkbox
+    private boolean momentShadows;
+    private boolean areShadowMomentsRendered;
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 0.0f, max = 0.9f)
+    private float momentsLightBleedingReduction = 0.2f;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 1.0f, max = 16.0f)
+    private float shadowFilterTaps = 8.0f;
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 0.0f, max = 4.0f)
+    private float shadowFilterRadius = 1.5f;
+
     public DeferredMainLightNode(String nodeUri, Name providingModule, Context context) {
         super(nodeUri, providingModule, context);
 
         backdropProvider = context.get(BackdropProvider.class);
         renderingConfig = context.get(Config.class).getRendering();
-        worldProvider = context.get(WorldProvider.class);
+        shadowMapResolutionDependentFbo = context.get(ShadowMapResolutionDependentFbo.class);
+        immutableFbo = context.get(ImmutableFbo.class);
         coreRendering = ((CoreRenderingModule) context.get(RenderingModuleRegistry.class)
                 .getModuleRenderingByClass(CoreRenderingModule.class));
 
@@ -92,6 +147,42 @@ public class DeferredMainLightNode extends AbstractNode {
         addOutputBufferPairConnection(1);
         this.renderQuad = Assets.get(new ResourceUrn("engine:ScreenQuad"), Mesh.class)
                 .orElseThrow(() -> new RuntimeException("Failed to resolve render Quad"));
+
+        shadowMapSampler = glGenSamplers();
+        glSamplerParameteri(shadowMapSampler, GL_TEXTURE_COMPARE_MODE, GL_COMPARE_REF_TO_TEXTURE);
+        glSamplerParameteri(shadowMapSampler, GL_TEXTURE_COMPARE_FUNC, GL_LEQUAL);
+        glSamplerParameteri(shadowMapSampler, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glSamplerParameteri(shadowMapSampler, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glSamplerParameteri(shadowMapSampler, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_BORDER);
+        glSamplerParameteri(shadowMapSampler, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_BORDER);
+        glSamplerParameterfv(shadowMapSampler, GL_TEXTURE_BORDER_COLOR, new float[] {1.0f, 1.0f, 1.0f, 1.0f});
+
+        // The border holds the moments of the farthest depth, so that everything beyond the shadow map is lit.
+        float exponent = ShadowMomentsNode.EXPONENT;
+        shadowMomentsSampler = glGenSamplers();
+        glSamplerParameteri(shadowMomentsSampler, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+        glSamplerParameteri(shadowMomentsSampler, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glSamplerParameteri(shadowMomentsSampler, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_BORDER);
+        glSamplerParameteri(shadowMomentsSampler, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_BORDER);
+        glSamplerParameterfv(shadowMomentsSampler, GL_TEXTURE_BORDER_COLOR, new float[] {
+                (float) Math.exp(exponent), (float) Math.exp(2.0f * exponent),
+                (float) -Math.exp(-exponent), (float) Math.exp(-2.0f * exponent)});
+    }
+
+    /**
+     * @return true if the shadows are looked up in the moments produced by the ShadowMomentsNodes, rather than
+     * in the shadow map itself.
+     */
+    public boolean isUsingMomentShadows() {
+        return momentShadows && renderingConfig.isDynamicShadows();
+    }
+
+    /**
+     * Called by the second ShadowMomentsNode, with true once it has rendered the moments and their mipmaps,
+     * with false once it has released them.
+     */
+    void setShadowMomentsRendered(boolean areShadowMomentsRendered) {
+        this.areShadowMomentsRendered = areShadowMomentsRendered;
     }
 
     @Override
@@ -113,7 +204,6 @@ public class DeferredMainLightNode extends AbstractNode {
 
         initMainDirectionalLight();
 
-        ShadowMapResolutionDependentFbo shadowMapResolutionDependentFBOs = context.get(ShadowMapResolutionDependentFbo.class);
         DisplayResolutionDependentFbo displayResolutionDependentFBOs = context.get(DisplayResolutionDependentFbo.class);
 
         int textureSlot = 0;
@@ -121,7 +211,8 @@ public class DeferredMainLightNode extends AbstractNode {
         addDesiredStateChange(new SetInputTextureFromFbo(textureSlot++, lastUpdatedGBuffer, NormalsTexture, displayResolutionDependentFBOs, LIGHT_GEOMETRY_MATERIAL_URN, "texSceneOpaqueNormals"));
         addDesiredStateChange(new SetInputTextureFromFbo(textureSlot++, lastUpdatedGBuffer, LightAccumulationTexture, displayResolutionDependentFBOs, LIGHT_GEOMETRY_MATERIAL_URN, "texSceneOpaqueLightBuffer"));
         if (renderingConfig.isDynamicShadows()) {
-            addDesiredStateChange(new SetInputTextureFromFbo(textureSlot++, getInputFboData(1), DepthStencilTexture, shadowMapResolutionDependentFBOs, LIGHT_GEOMETRY_MATERIAL_URN, "texSceneShadowMap"));
+            // Bound to SHADOW_MAP_TEXTURE_SLOT, where process() binds the shadow map sampler.
+            addDesiredStateChange(new SetInputTextureFromFbo(textureSlot++, getInputFboData(1), DepthStencilTexture, shadowMapResolutionDependentFbo, LIGHT_GEOMETRY_MATERIAL_URN, "texSceneShadowMap"));
 
             if (renderingConfig.isCloudShadows()) {
                 addDesiredStateChange(new SetInputTexture2D(textureSlot, "engine:perlinNoiseTileable", LIGHT_GEOMETRY_MATERIAL_URN, "texSceneClouds"));
@@ -143,7 +234,7 @@ public class DeferredMainLightNode extends AbstractNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         lightGeometryMaterial.activateFeature(ShaderProgramFeature.FEATURE_LIGHT_DIRECTIONAL);
 
@@ -162,11 +253,25 @@ public class DeferredMainLightNode extends AbstractNode {
         lightGeometryMaterial.setInt("texSceneOpaqueDepth", 0, true);
         lightGeometryMaterial.setInt("texSceneOpaqueNormals", 1, true);
         lightGeometryMaterial.setInt("texSceneOpaqueLightBuffer", 2, true);
+        FBO shadowMomentsFbo = null;
         if (renderingConfig.isDynamicShadows()) {
-            lightGeometryMaterial.setInt("texSceneShadowMap", 3, true);
+            // The ShadowMomentsNodes run earlier in the frame, hence the moments are up to date by now.
+            if (momentShadows && areShadowMomentsRendered) {
+                shadowMomentsFbo = immutableFbo.get(ShadowMomentsNode.SHADOW_MOMENTS_FBO_URI);
+            }
+            lightGeometryMaterial.setInt("texSceneShadowMap", SHADOW_MAP_TEXTURE_SLOT, true);
+            lightGeometryMaterial.setInt("texSceneShadowMoments", SHADOW_MOMENTS_TEXTURE_SLOT, true);
+            lightGeometryMaterial.setInt("useShadowMoments", shadowMomentsFbo != null ? 1 : 0, true);
+            if (shadowMomentsFbo != null) {
+                lightGeometryMaterial.setFloat("shadowMomentsExponent", ShadowMomentsNode.EXPONENT, true);
+                lightGeometryMaterial.setFloat("lightBleedingReduction", momentsLightBleedingReduction, true);
+            }
+            if (renderingConfig.isDynamicShadowsPcfFiltering()) {
+                lightGeometryMaterial.setInt("shadowTapCount", (int) shadowFilterTaps, true);
+                lightGeometryMaterial.setFloat("shadowFilterRadius", shadowFilterRadius, true);
+            }
             if (renderingConfig.isCloudShadows()) {
                 lightGeometryMaterial.setInt("texSceneClouds", 4, true);
-                lightGeometryMaterial.setFloat("time", worldProvider.getTime().getDays(), true);
                 lightGeometryMaterial.setFloat3("cameraPosition", cameraPosition, true);
             }
         }
@@ -175,8 +280,16 @@ public class DeferredMainLightNode extends AbstractNode {
             lightCamera = coreRendering.getLightCamera();
             cameraPosition.sub(lightCamera.getPosition(), activeCameraToLightSpace);
             lightGeometryMaterial.setMatrix4("lightViewProjMatrix", lightCamera.getViewProjectionMatrix(), true);
-            lightGeometryMaterial.setMatrix4("invViewProjMatrix", activeCamera.getInverseViewProjectionMatrix(), true);
             lightGeometryMaterial.setFloat3("activeCameraToLightSpace", activeCameraToLightSpace, true);
+
+            // The sampler object overrides the sampling state of the shadow map texture, for this node only.
+            glBindSampler(SHADOW_MAP_TEXTURE_SLOT, shadowMapSampler);
+            glBindSampler(SHADOW_MOMENTS_TEXTURE_SLOT, shadowMomentsSampler);
+            if (shadowMomentsFbo != null) {
+                glActiveTexture(GL_TEXTURE0 + SHADOW_MOMENTS_TEXTURE_SLOT);
+                glBindTexture(GL_TEXTURE_2D, shadowMomentsFbo.getColorBufferTextureId());
+                glActiveTexture(GL_TEXTURE0);
+            }
         }
 
         // Note: no need to set a camera here: the render takes place
@@ -194,8 +307,20 @@ public class DeferredMainLightNode extends AbstractNode {
 
         this.renderQuad.render(); // renders the light.
 
+        if (renderingConfig.isDynamicShadows()) {
+            glBindSampler(SHADOW_MAP_TEXTURE_SLOT, 0);
+            glBindSampler(SHADOW_MOMENTS_TEXTURE_SLOT, 0);
+        }
+
         lightGeometryMaterial.deactivateFeature(ShaderProgramFeature.FEATURE_LIGHT_DIRECTIONAL);
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
+    }
+
+    @Override
+    public void dispose() {
+        glDeleteSamplers(shadowMapSampler);
+        glDeleteSamplers(shadowMomentsSampler);
+        super.dispose();
     }
 }
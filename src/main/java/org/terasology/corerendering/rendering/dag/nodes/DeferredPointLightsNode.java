@@ -3,7 +3,9 @@
 package org.terasology.corerendering.rendering.dag.nodes;
 
 import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Vector3f;
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.corerendering.rendering.CoreRenderingModule;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
@@ -12,7 +14,6 @@ import org.terasology.engine.core.module.rendering.RenderingModuleRegistry;
 import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.logic.location.LocationComponent;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.assets.mesh.SphereBuilder;
@@ -35,7 +36,6 @@ import org.terasology.engine.rendering.opengl.FBO;
 import org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo;
 import org.terasology.engine.rendering.world.WorldRenderer;
 import org.terasology.engine.utilities.Assets;
-import org.terasology.engine.world.WorldProvider;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.naming.Name;
 
@@ -54,10 +54,17 @@ import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFr
  */
 public class DeferredPointLightsNode extends AbstractNode {
     private static final ResourceUrn LIGHT_GEOMETRY_MATERIAL_URN = new ResourceUrn("CoreRendering:lightGeometryPass");
+    // Maps the light's clip space coordinates, in the [-1, 1] range, to the shadow map's [0, 1] range.
+    private static final Matrix4fc LIGHT_MATRIX_BIAS = new Matrix4f(
+            0.5f, 0.0f, 0.0f, 0.0f,
+            0.0f, 0.5f, 0.0f, 0.0f,
+            0.0f, 0.0f, 0.5f, 0.0f,
+            0.5f, 0.5f, 0.5f, 1.0f);
+
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
 
     private EntityManager entityManager;
     private RenderingConfig renderingConfig;
-    private WorldProvider worldProvider;
 
     private Material lightGeometryMaterial;
 
@@ -68,13 +75,17 @@ public class DeferredPointLightsNode extends AbstractNode {
     private Vector3f cameraPosition;
     @SuppressWarnings("FieldCanBeLocal")
     private Vector3f activeCameraToLightSpace = new Vector3f();
+    private final Matrix4f lightMatrix = new Matrix4f();
+    private final Vector3f lightPosition = new Vector3f();
+    private final Vector3f lightPositionRelativeToCamera = new Vector3f();
+    private final Vector3f lightPositionInViewSpace = new Vector3f();
+    private final Matrix4f modelMatrix = new Matrix4f();
     private final Mesh unitSphereMesh;
 
     public DeferredPointLightsNode(String nodeUri, Name providingModule, Context context) {
         super(nodeUri, providingModule, context);
 
         renderingConfig = context.get(Config.class).getRendering();
-        worldProvider = context.get(WorldProvider.class);
         entityManager = context.get(EntityManager.class);
         unitSphereMesh = Assets.generateAsset(
                 new SphereBuilder().
@@ -138,7 +149,7 @@ public class DeferredPointLightsNode extends AbstractNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         lightGeometryMaterial.activateFeature(ShaderProgramFeature.FEATURE_LIGHT_POINT);
 
@@ -150,46 +161,38 @@ public class DeferredPointLightsNode extends AbstractNode {
         // TODO: Remove this explicit binding once we get rid of activateFeature, or find a way to retain parameters through it.
         lightGeometryMaterial.setInt("texSceneOpaqueDepth", 0, true);
         lightGeometryMaterial.setInt("texSceneOpaqueNormals", 1, true);
-        lightGeometryMaterial.setMatrix4("viewProjMatrix", activeCamera.getViewProjectionMatrix());
 
         if (renderingConfig.isDynamicShadows()) {
             if (renderingConfig.isCloudShadows()) {
-                lightGeometryMaterial.setFloat("time", worldProvider.getTime().getDays(), true);
                 lightGeometryMaterial.setFloat3("cameraPosition", cameraPosition, true);
             }
         }
 
         if (renderingConfig.isDynamicShadows()) {
 
-            lightGeometryMaterial.setMatrix4("lightMatrix", new Matrix4f(
-                    0.5f,0.0f,0.0f,0.0f,
-                    0.0f,0.5f,0.0f,0.0f,
-                    0.0f,0.0f,0.5f,0.0f,
-                    0.5f,0.5f,0.5f,1.0f)
+            lightGeometryMaterial.setMatrix4("lightMatrix", lightMatrix.set(LIGHT_MATRIX_BIAS)
                     .mul(lightCamera.getProjectionMatrix())
                     .mul(lightCamera.getViewMatrix())
             );
 
-            lightGeometryMaterial.setMatrix4("invViewProjMatrix", activeCamera.getInverseViewProjectionMatrix(), true);
             cameraPosition.sub(lightCamera.getPosition(), activeCameraToLightSpace);
             lightGeometryMaterial.setFloat3("activeCameraToLightSpace", activeCameraToLightSpace.x, activeCameraToLightSpace.y, activeCameraToLightSpace.z, true);
         }
 
         // Actual Node Processing
 
+        lightGeometryMaterial.setCamera(activeCamera);
+
         for (EntityRef entity : entityManager.getEntitiesWith(LightComponent.class, LocationComponent.class)) {
             LightComponent lightComponent = entity.getComponent(LightComponent.class);
 
             if (lightComponent.lightType == LightComponent.LightType.POINT) {
                 LocationComponent locationComponent = entity.getComponent(LocationComponent.class);
-                final Vector3f lightPositionInTeraCoords = locationComponent.getWorldPosition(new Vector3f());
+                final Vector3f lightPositionInTeraCoords = locationComponent.getWorldPosition(lightPosition);
 
-                Vector3f lightPositionRelativeToCamera = new Vector3f();
                 lightPositionInTeraCoords.sub(activeCamera.getPosition(),lightPositionRelativeToCamera);
 
                 if (lightIsRenderable(lightComponent, lightPositionRelativeToCamera)) {
-                    lightGeometryMaterial.setCamera(activeCamera);
-
                     // setting shader parameters regarding the light's properties
                     lightGeometryMaterial.setFloat3("lightColorDiffuse", lightComponent.lightColorDiffuse.x,
                         lightComponent.lightColorDiffuse.y, lightComponent.lightColorDiffuse.z, true);
@@ -201,13 +204,12 @@ public class DeferredPointLightsNode extends AbstractNode {
                         lightComponent.lightAttenuationFalloff, 0.0f, 0.0f, true);
 
                     // setting shader parameters for the light position in camera space
-                    Vector3f lightPositionInViewSpace = new Vector3f(lightPositionRelativeToCamera).mulPosition(activeCamera.getViewMatrix());
+                    lightPositionRelativeToCamera.mulPosition(activeCamera.getViewMatrix(), lightPositionInViewSpace);
 
                     lightGeometryMaterial.setFloat3("lightViewPos", lightPositionInViewSpace.x, lightPositionInViewSpace.y, lightPositionInViewSpace.z, true);
 
                     // set the size and location of the sphere to be rendered via shader parameters
-                    Matrix4f modelMatrix = new Matrix4f();
-                    modelMatrix.scale(lightComponent.lightAttenuationRange); // scales the modelview matrix, effectively scales the light sphere
+                    modelMatrix.scaling(lightComponent.lightAttenuationRange); // scales the modelview matrix, effectively scales the light sphere
                     modelMatrix.setTranslation(lightPositionRelativeToCamera); // effectively moves the light sphere in the right position relative to camera
                     lightGeometryMaterial.setMatrix4("modelMatrix", modelMatrix, true);
 
@@ -218,6 +220,6 @@ public class DeferredPointLightsNode extends AbstractNode {
 
         lightGeometryMaterial.deactivateFeature(ShaderProgramFeature.FEATURE_LIGHT_POINT);
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 }
@@ -2,8 +2,8 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.context.Context;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.dag.ConditionDependentNode;
@@ -28,6 +28,8 @@ public class DownSamplerNode extends ConditionDependentNode {
     private static final String TEXTURE_NAME = "tex";
     private static final ResourceUrn DOWN_SAMPLER_MATERIAL_URN = new ResourceUrn("CoreRendering:downSampler");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private FBO outputFbo;
     private Material downSampler;
     private BaseFboManager inputFboManager;
@@ -61,13 +63,13 @@ public class DownSamplerNode extends ConditionDependentNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         downSampler.setFloat("size", outputFbo.width(), true);
 
         renderQuad.render();
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     @Override
@@ -2,19 +2,18 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
 import org.terasology.engine.input.cameraTarget.CameraTargetSystem;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.naming.Name;
 import org.terasology.nui.properties.Range;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.assets.texture.TextureUtil;
-import org.terasology.engine.rendering.cameras.Camera;
 import org.terasology.engine.rendering.dag.AbstractNode;
 import org.terasology.engine.rendering.dag.StateChange;
 import org.terasology.engine.rendering.dag.dependencyConnections.BufferPairConnection;
@@ -53,6 +52,8 @@ public class FinalPostProcessingNode extends AbstractNode implements PropertyCha
     public static final SimpleUri POST_FBO_URI = new SimpleUri("engine:fbo.finalBuffer");
     private static final ResourceUrn POST_MATERIAL_URN = new ResourceUrn("CoreRendering:post");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private WorldRenderer worldRenderer;
     private RenderingConfig renderingConfig;
     private ScreenGrabber screenGrabber;
@@ -62,7 +63,6 @@ public class FinalPostProcessingNode extends AbstractNode implements PropertyCha
     private Random randomGenerator = new FastRandom();
 
     private CameraTargetSystem cameraTargetSystem;
-    private Camera activeCamera;
 
     @SuppressWarnings("FieldCanBeLocal")
     @Range(min = 0.0f, max = 1.0f)
@@ -83,7 +83,6 @@ public class FinalPostProcessingNode extends AbstractNode implements PropertyCha
         super(nodeUri, providingModule, context);
 
         worldRenderer = context.get(WorldRenderer.class);
-        activeCamera = worldRenderer.getActiveCamera();
         screenGrabber = context.get(ScreenGrabber.class);
         cameraTargetSystem = context.get(CameraTargetSystem.class);
 
@@ -140,7 +139,7 @@ public class FinalPostProcessingNode extends AbstractNode implements PropertyCha
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         postMaterial.setFloat("focalDistance", cameraTargetSystem.getFocalDistance(), true); //for use in DOF effect
 
@@ -152,17 +151,12 @@ public class FinalPostProcessingNode extends AbstractNode implements PropertyCha
             postMaterial.setFloat2("renderTargetSize", lastUpdatedGBuffer.width(), lastUpdatedGBuffer.height(), true);
         }
 
-        if (isMotionBlurEnabled) {
-            postMaterial.setMatrix4("invViewProjMatrix", activeCamera.getInverseViewProjectionMatrix(), true);
-            postMaterial.setMatrix4("prevViewProjMatrix", activeCamera.getPrevViewProjectionMatrix(), true);
-        }
-
         this.renderQuad.render();
         if (screenGrabber.isTakingScreenshot()) {
             screenGrabber.saveScreenshot();
         }
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     @Override
@@ -0,0 +1,169 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.rendering.dag.nodes;
+
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.engine.context.Context;
+import org.terasology.engine.rendering.backdrop.BackdropProvider;
+import org.terasology.engine.rendering.cameras.SubmersibleCamera;
+import org.terasology.engine.rendering.dag.AbstractNode;
+import org.terasology.engine.rendering.world.WorldRenderer;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.gestalt.naming.Name;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL30.glBindBufferBase;
+import static org.lwjgl.opengl.GL31.GL_INVALID_INDEX;
+import static org.lwjgl.opengl.GL31.GL_UNIFORM_BLOCK_DATA_SIZE;
+import static org.lwjgl.opengl.GL31.GL_UNIFORM_BUFFER;
+import static org.lwjgl.opengl.GL31.GL_UNIFORM_OFFSET;
+import static org.lwjgl.opengl.GL31.glGetActiveUniformBlocki;
+import static org.lwjgl.opengl.GL31.glGetActiveUniformsi;
+import static org.lwjgl.opengl.GL31.glGetUniformBlockIndex;
+import static org.lwjgl.opengl.GL31.glGetUniformIndices;
+
+/**
+ * An instance of this node uploads, once per frame, the camera and environment values shared by most shaders
+ * into a uniform buffer, so that nodes no longer have to set them on each of their materials individually.
+ *
+ * Shaders access these values through the following uniform block. The engine assembles each shader from its own
+ * source only, offering modules no way to include shared GLSL code, hence the block is declared in every shader
+ * using it. The declarations must match the one below: checkBlockLayout() compares a program's declaration with
+ * the layout of the buffer, and the ShaderWarmUp reports the programs whose declaration is out of step.
+ *
+ * <pre>
+ * layout(std140) uniform FrameConstants {
+ *     mat4 projectionMatrix;
+ *     mat4 invProjectionMatrix;
+ *     mat4 viewProjectionMatrix;
+ *     mat4 invViewProjectionMatrix;
+ *     mat4 prevViewProjectionMatrix;
+ *     vec4 sunDirection;
+ *     float zNear;
+ *     float zFar;
+ *     float time;
+ *     float daylight;
+ * } frame;
+ * </pre>
+ *
+ * The buffer is bound to binding point 0, which is also the binding every uniform block is initially assigned to.
+ * This spares us from having to assign the binding in each shader program, but it also means only one uniform
+ * block per program can be used this way.
+ *
+ * Notice that the matrices are those of the active camera at the time this node is processed: nodes rendering
+ * through a differently set up camera, i.e. the light camera, must keep providing their own matrices.
+ */
+public class FrameConstantsNode extends AbstractNode {
+    public static final int FRAME_CONSTANTS_BINDING = 0;
+    public static final String FRAME_CONSTANTS_BLOCK = "FrameConstants";
+
+    private static final int MATRIX_SIZE = 16;
+    private static final int SUN_DIRECTION_OFFSET = 5 * MATRIX_SIZE;
+    private static final int SCALARS_OFFSET = SUN_DIRECTION_OFFSET + 4;
+    private static final int BUFFER_SIZE = SCALARS_OFFSET + 4;
+
+    // The members of the block, in order, and their offsets in floats under the std140 layout.
+    private static final String[] MEMBER_NAMES = {"projectionMatrix", "invProjectionMatrix", "viewProjectionMatrix",
+            "invViewProjectionMatrix", "prevViewProjectionMatrix", "sunDirection", "zNear", "zFar", "time", "daylight"};
+    private static final int[] MEMBER_OFFSETS = {0, MATRIX_SIZE, 2 * MATRIX_SIZE, 3 * MATRIX_SIZE, 4 * MATRIX_SIZE,
+            SUN_DIRECTION_OFFSET, SCALARS_OFFSET, SCALARS_OFFSET + 1, SCALARS_OFFSET + 2, SCALARS_OFFSET + 3};
+
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private final SubmersibleCamera activeCamera;
+    private final BackdropProvider backdropProvider;
+    private final WorldProvider worldProvider;
+
+    private final FloatBuffer frameConstants = BufferUtils.createFloatBuffer(BUFFER_SIZE);
+    private final int uniformBuffer;
+
+    public FrameConstantsNode(String nodeUri, Name providingModule, Context context) {
+        super(nodeUri, providingModule, context);
+
+        activeCamera = context.get(WorldRenderer.class).getActiveCamera();
+        backdropProvider = context.get(BackdropProvider.class);
+        worldProvider = context.get(WorldProvider.class);
+
+        uniformBuffer = glGenBuffers();
+        glBindBuffer(GL_UNIFORM_BUFFER, uniformBuffer);
+        glBufferData(GL_UNIFORM_BUFFER, (long) BUFFER_SIZE * Float.BYTES, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+    }
+
+    @Override
+    public void setDependencies(Context context) {
+
+    }
+
+    /**
+     * Fills the uniform buffer with this frame's values and binds it to FRAME_CONSTANTS_BINDING.
+     */
+    @Override
+    public void process() {
+        renderingActivity.start();
+
+        activeCamera.getProjectionMatrix().get(0, frameConstants);
+        activeCamera.getInverseProjectionMatrix().get(MATRIX_SIZE, frameConstants);
+        activeCamera.getViewProjectionMatrix().get(2 * MATRIX_SIZE, frameConstants);
+        activeCamera.getInverseViewProjectionMatrix().get(3 * MATRIX_SIZE, frameConstants);
+        activeCamera.getPrevViewProjectionMatrix().get(4 * MATRIX_SIZE, frameConstants);
+
+        Vector3f sunDirection = backdropProvider.getSunDirection(false);
+        frameConstants.put(SUN_DIRECTION_OFFSET, sunDirection.x);
+        frameConstants.put(SUN_DIRECTION_OFFSET + 1, sunDirection.y);
+        frameConstants.put(SUN_DIRECTION_OFFSET + 2, sunDirection.z);
+        frameConstants.put(SUN_DIRECTION_OFFSET + 3, 0.0f);
+
+        frameConstants.put(SCALARS_OFFSET, activeCamera.getzNear());
+        frameConstants.put(SCALARS_OFFSET + 1, activeCamera.getzFar());
+        frameConstants.put(SCALARS_OFFSET + 2, worldProvider.getTime().getDays());
+        frameConstants.put(SCALARS_OFFSET + 3, backdropProvider.getDaylight());
+
+        glBindBuffer(GL_UNIFORM_BUFFER, uniformBuffer);
+        glBufferSubData(GL_UNIFORM_BUFFER, 0, frameConstants);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        glBindBufferBase(GL_UNIFORM_BUFFER, FRAME_CONSTANTS_BINDING, uniformBuffer);
+
+        renderingActivity.end();
+    }
+
+    @Override
+    public void dispose() {
+        glDeleteBuffers(uniformBuffer);
+        super.dispose();
+    }
+
+    /**
+     * @param program the id of a linked shader program.
+     * @return false if the program declares the FrameConstants block with a layout other than the buffer's,
+     * true if the layouts match or if the program doesn't use the block.
+     */
+    public static boolean checkBlockLayout(int program) {
+        int blockIndex = glGetUniformBlockIndex(program, FRAME_CONSTANTS_BLOCK);
+        if (blockIndex == GL_INVALID_INDEX) {
+            return true;
+        }
+        if (glGetActiveUniformBlocki(program, blockIndex, GL_UNIFORM_BLOCK_DATA_SIZE) != BUFFER_SIZE * Float.BYTES) {
+            return false;
+        }
+
+        for (int member = 0; member < MEMBER_NAMES.length; member++) {
+            int uniformIndex = glGetUniformIndices(program, FRAME_CONSTANTS_BLOCK + "." + MEMBER_NAMES[member]);
+            // A member may be reported as inactive if no shader of the program reads it.
+            if (uniformIndex != GL_INVALID_INDEX
+                    && glGetActiveUniformsi(program, uniformIndex, GL_UNIFORM_OFFSET) != MEMBER_OFFSETS[member] * Float.BYTES) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2,11 +2,11 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.utilities.Assets;
 import org.terasology.gestalt.assets.ResourceUrn;
@@ -43,6 +43,8 @@ public class InitialPostProcessingNode extends AbstractNode implements PropertyC
     static final SimpleUri INITIAL_POST_FBO_URI = new SimpleUri("engine:fbo.initialPost");
     private static final ResourceUrn INITIAL_POST_MATERIAL_URN = new ResourceUrn("CoreRendering:initialPost");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private RenderingConfig renderingConfig;
     private WorldProvider worldProvider;
     private WorldRenderer worldRenderer;
@@ -133,7 +135,7 @@ public class InitialPostProcessingNode extends AbstractNode implements PropertyC
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         // Common Shader Parameters
 
@@ -150,7 +152,7 @@ public class InitialPostProcessingNode extends AbstractNode implements PropertyC
         // Actual Node Processing
         this.renderQuad.render();
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     @Override
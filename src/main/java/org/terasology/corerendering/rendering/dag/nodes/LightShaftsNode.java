@@ -4,6 +4,7 @@ package org.terasology.corerendering.rendering.dag.nodes;
 
 import org.joml.Vector3f;
 import org.joml.Vector4f;
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.utilities.Assets;
 import org.terasology.gestalt.assets.ResourceUrn;
@@ -11,7 +12,6 @@ import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.gestalt.naming.Name;
 import org.terasology.nui.properties.Range;
 import org.terasology.engine.rendering.assets.material.Material;
@@ -47,6 +47,8 @@ public class LightShaftsNode extends ConditionDependentNode {
     public static final SimpleUri LIGHT_SHAFTS_FBO_URI = new SimpleUri("engine:fbo.lightShafts");
     private static final ResourceUrn LIGHT_SHAFTS_MATERIAL_URN = new ResourceUrn("CoreRendering:lightShafts");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private BackdropProvider backdropProvider;
     private SubmersibleCamera activeCamera;
     private WorldProvider worldProvider;
@@ -124,7 +126,7 @@ public class LightShaftsNode extends ConditionDependentNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         // Get time of day from midnight to midnight <0, 1>, 0.5 being noon.
 
@@ -167,7 +169,7 @@ public class LightShaftsNode extends ConditionDependentNode {
         // In particular see the class ShaderParametersLightShafts and resource lightShafts_frag.glsl
         this.renderQuad.render();
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
 
@@ -6,11 +6,13 @@ import org.joml.Matrix3f;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.corerendering.monitoring.RenderingProfiler;
+import org.terasology.corerendering.rendering.ChunkLodSelector;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.config.RenderingDebugConfig;
 import org.terasology.engine.context.Context;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.AABBRenderer;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.cameras.SubmersibleCamera;
@@ -27,7 +29,6 @@ import org.terasology.engine.rendering.dag.stateChanges.SetWireframe;
 import org.terasology.engine.rendering.primitives.ChunkMesh;
 import org.terasology.engine.rendering.world.RenderQueuesHelper;
 import org.terasology.engine.rendering.world.WorldRenderer;
-import org.terasology.engine.world.WorldProvider;
 import org.terasology.engine.world.chunks.RenderableChunk;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.naming.Name;
@@ -42,14 +43,22 @@ import static org.terasology.engine.rendering.primitives.ChunkMesh.RenderPhase.O
  * This node renders the opaque blocks in the world.
  *
  * In a typical world this is the majority of the world's landscape.
+ *
+ * Opaque chunks are rendered at full detail regardless of their level of detail, as there is nothing to leave
+ * out of them, but their triangles are counted per level. See ChunkLodSelector.
  */
 public class OpaqueBlocksNode extends AbstractNode implements WireframeCapable, PropertyChangeListener {
     private static final ResourceUrn CHUNK_MATERIAL_URN = new ResourceUrn("CoreRendering:chunk");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private final Matrix4f modelViewMatrix = new Matrix4f();
+    private final Matrix3f normalMatrix = new Matrix3f();
+
     private WorldRenderer worldRenderer;
     private RenderQueuesHelper renderQueues;
     private RenderingConfig renderingConfig;
-    private WorldProvider worldProvider;
+    private ChunkLodSelector chunkLodSelector;
 
     private Material chunkMaterial;
     private SetWireframe wireframeStateChange;
@@ -75,7 +84,7 @@ public class OpaqueBlocksNode extends AbstractNode implements WireframeCapable,
         super(nodeUri, providingModule, context);
 
         renderQueues = context.get(RenderQueuesHelper.class);
-        worldProvider = context.get(WorldProvider.class);
+        chunkLodSelector = context.get(ChunkLodSelector.class);
         addOutputBufferPairConnection(1);
     }
 
@@ -159,16 +168,10 @@ public class OpaqueBlocksNode extends AbstractNode implements WireframeCapable,
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
-
-        // Common Shader Parameters
-
-        chunkMaterial.setFloat("time", worldProvider.getTime().getDays(), true);
+        renderingActivity.start();
 
         // Specific Shader Parameters
 
-        chunkMaterial.setFloat("clip", 0.0f, true);
-
         if (parallaxMappingIsEnabled) {
             chunkMaterial.setFloat4("parallaxProperties", parallaxBias, parallaxScale, 0.0f, 0.0f, true);
         }
@@ -180,11 +183,6 @@ public class OpaqueBlocksNode extends AbstractNode implements WireframeCapable,
         int numberOfRenderedTriangles = 0;
         int numberOfChunksThatAreNotReadyYet = 0;
 
-        Matrix4f modelViewMatrix = new Matrix4f();
-        Matrix4f model = new Matrix4f();
-        Matrix3f normalMatrix = new Matrix3f();
-        chunkMaterial.setMatrix4("projectionMatrix", activeCamera.getProjectionMatrix(), true);
-
         while (renderQueues.chunksOpaque.size() > 0) {
             RenderableChunk chunk = renderQueues.chunksOpaque.poll();
 
@@ -193,13 +191,14 @@ public class OpaqueBlocksNode extends AbstractNode implements WireframeCapable,
                 final Vector3fc chunkPosition = chunk.getRenderPosition();
 
                 chunkMesh.updateMaterial(chunkMaterial, chunkPosition, chunk.isAnimated());
-                model.setTranslation(chunkPosition.x() - cameraPosition.x(),
+                modelViewMatrix.set(activeCamera.getViewMatrix()).translate(chunkPosition.x() - cameraPosition.x(),
                         chunkPosition.y() - cameraPosition.y(),
                         chunkPosition.z() - cameraPosition.z());
-                modelViewMatrix.set(activeCamera.getViewMatrix()).mul(model);
                 chunkMaterial.setMatrix4("modelViewMatrix", modelViewMatrix, true);
                 chunkMaterial.setMatrix3("normalMatrix", modelViewMatrix.normal(normalMatrix), true);
-                numberOfRenderedTriangles += chunkMesh.render(OPAQUE);
+                int numberOfChunkTriangles = chunkMesh.render(OPAQUE);
+                numberOfRenderedTriangles += numberOfChunkTriangles;
+                renderingActivity.countTriangles(chunkLodSelector.getLevel(chunk, cameraPosition), numberOfChunkTriangles);
 
                 if (renderingDebugConfig.isRenderChunkBoundingBoxes()) {
                     try (AABBRenderer renderer = new AABBRenderer(chunk.getAABB())) {
@@ -213,9 +212,10 @@ public class OpaqueBlocksNode extends AbstractNode implements WireframeCapable,
         }
 
         worldRenderer.increaseTrianglesCount(numberOfRenderedTriangles);
+        RenderingProfiler.addTriangles(numberOfRenderedTriangles);
         worldRenderer.increaseNotReadyChunkCount(numberOfChunksThatAreNotReadyYet);
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     @Override
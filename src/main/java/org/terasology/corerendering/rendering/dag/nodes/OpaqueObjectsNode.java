@@ -2,12 +2,12 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingDebugConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.ComponentSystemManager;
 import org.terasology.engine.entitySystem.systems.RenderSystem;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.dag.WireframeCapable;
 import org.terasology.engine.rendering.dag.WireframeTrigger;
 import org.terasology.engine.rendering.dag.dependencyConnections.BufferPairConnection;
@@ -26,6 +26,8 @@ import org.terasology.gestalt.naming.Name;
  * take advantage of the RenderSystem.renderOpaque() method, which is called in process().
  */
 public class OpaqueObjectsNode extends AbstractNode implements WireframeCapable {
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private ComponentSystemManager componentSystemManager;
     private WorldRenderer worldRenderer;
 
@@ -86,12 +88,12 @@ public class OpaqueObjectsNode extends AbstractNode implements WireframeCapable
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         for (RenderSystem renderer : componentSystemManager.iterateRenderSubscribers()) {
             renderer.renderOpaque();
         }
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 }
@@ -2,11 +2,11 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.cameras.SubmersibleCamera;
@@ -39,6 +39,8 @@ public class OutlineNode extends ConditionDependentNode {
     public static final SimpleUri OUTLINE_FBO_URI = new SimpleUri("engine:fbo.outline");
     private static final ResourceUrn OUTLINE_MATERIAL_URN = new ResourceUrn("CoreRendering:sobel");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private RenderingConfig renderingConfig;
     private SubmersibleCamera activeCamera;
 
@@ -101,7 +103,7 @@ public class OutlineNode extends ConditionDependentNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         // Shader Parameters
 
@@ -116,6 +118,6 @@ public class OutlineNode extends ConditionDependentNode {
         // Actual Node Processing
         renderQuad.render();
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 }
@@ -3,10 +3,10 @@
 package org.terasology.corerendering.rendering.dag.nodes;
 
 import org.lwjgl.opengl.GL11;
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.dag.ConditionDependentNode;
 import org.terasology.engine.rendering.dag.stateChanges.EnableMaterial;
@@ -33,6 +33,8 @@ public class OutputToHMDNode extends ConditionDependentNode {
     private static final ResourceUrn OUTPUT_TEXTURED_MATERIAL_URN = new ResourceUrn("CoreRendering:outputPass");
     // TODO: make these configurable options
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private OpenVRProvider vrProvider;
     private Mesh renderQuad;
 
@@ -84,10 +86,10 @@ public class OutputToHMDNode extends ConditionDependentNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
         finalFbo.bindTexture();
         renderFinalStereoImage(worldRenderer.getCurrentRenderStage());
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     private void renderFinalStereoImage(RenderingStage renderingStage) {
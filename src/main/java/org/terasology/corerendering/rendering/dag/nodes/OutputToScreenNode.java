@@ -2,10 +2,10 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
 import org.terasology.engine.core.subsystem.DisplayDevice;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.dag.ConditionDependentNode;
 import org.terasology.engine.rendering.dag.StateChange;
@@ -25,6 +25,8 @@ import static org.terasology.engine.rendering.world.WorldRenderer.RenderingStage
 public class OutputToScreenNode extends ConditionDependentNode {
     private static final ResourceUrn OUTPUT_TEXTURED_MATERIAL_URN = new ResourceUrn("CoreRendering:outputPass");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private DisplayResolutionDependentFbo displayResolutionDependentFBOs;
     private DisplayDevice displayDevice;
     private Mesh renderQuad;
@@ -57,13 +59,13 @@ public class OutputToScreenNode extends ConditionDependentNode {
 
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
         // The way things are set-up right now, we can have FBOs that are not the same size as the display (if scale != 100%).
         // However, when drawing the final image to the screen, we always want the viewport to match the size of display,
         // and not that of some FBO. Hence, we are manually setting the viewport via glViewport over here.
         glViewport(0, 0, displayDevice.getWidth(), displayDevice.getHeight());
         this.renderQuad.render();
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     @Override
@@ -100,7 +102,10 @@ public class OutputToScreenNode extends ConditionDependentNode {
         }
     }
 
-    private void setFbo(FBO fbo) {
+    /**
+     * Displays the given FBO rather than the one connected to the input of this node.
+     */
+    public void setFbo(FBO fbo) {
         removeDesiredStateChange(bindFbo);
         bindFbo = new SetInputTextureFromFbo(0, fbo, ColorTexture, displayResolutionDependentFBOs, OUTPUT_TEXTURED_MATERIAL_URN, "target");
         addDesiredStateChange(bindFbo);
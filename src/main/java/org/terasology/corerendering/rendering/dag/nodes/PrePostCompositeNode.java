@@ -2,13 +2,13 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.utilities.Assets;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.gestalt.naming.Name;
 import org.terasology.nui.properties.Range;
 import org.terasology.engine.rendering.assets.material.Material;
@@ -47,6 +47,8 @@ import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFr
 public class PrePostCompositeNode extends AbstractNode implements PropertyChangeListener {
     private static final ResourceUrn PRE_POST_MATERIAL_URN = new ResourceUrn("CoreRendering:prePostComposite");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private RenderingConfig renderingConfig;
     private WorldRenderer worldRenderer;
     private SubmersibleCamera activeCamera;
@@ -180,25 +182,19 @@ public class PrePostCompositeNode extends AbstractNode implements PropertyChange
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         // Shader Parameters
 
         prePostMaterial.setFloat("viewingDistance", renderingConfig.getViewDistance().getChunkDistance().x() * 8.0f, true);
         prePostMaterial.setFloat3("cameraParameters", activeCamera.getzNear(), activeCamera.getzFar(), 0.0f, true);
 
-        if (localReflectionsAreEnabled) {
-            prePostMaterial.setMatrix4("invProjMatrix", activeCamera.getInverseProjectionMatrix(), true);
-            prePostMaterial.setMatrix4("projMatrix", activeCamera.getProjectionMatrix(), true);
-        }
-
         if (outlineIsEnabled) {
             prePostMaterial.setFloat("outlineDepthThreshold", outlineDepthThreshold, true);
             prePostMaterial.setFloat("outlineThickness", outlineThickness, true);
         }
 
         if (volumetricFogIsEnabled) {
-            prePostMaterial.setMatrix4("invViewProjMatrix", activeCamera.getInverseViewProjectionMatrix(), true);
             prePostMaterial.setFloat3("volumetricFogSettings", 1f, volumetricFogGlobalDensity, volumetricFogHeightFalloff, true);
         }
 
@@ -212,7 +208,7 @@ public class PrePostCompositeNode extends AbstractNode implements PropertyChange
 
         renderQuad.render();
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     @Override
@@ -0,0 +1,125 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.rendering.dag.nodes;
+
+import org.joml.Vector3f;
+import org.terasology.engine.config.Config;
+import org.terasology.engine.config.RenderingConfig;
+import org.terasology.engine.context.Context;
+import org.terasology.engine.core.SimpleUri;
+import org.terasology.engine.rendering.cameras.SubmersibleCamera;
+import org.terasology.engine.rendering.opengl.BaseFboManager;
+import org.terasology.engine.rendering.opengl.FboConfig;
+import org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo;
+import org.terasology.engine.rendering.world.RenderQueuesHelper;
+import org.terasology.engine.rendering.world.WorldRenderer;
+import org.terasology.gestalt.naming.Name;
+import org.terasology.nui.properties.Range;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import static org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo.POST_FBO_REGENERATION;
+
+/**
+ * Clears the "engine:sceneReflected" buffer, but only in the frames in which the reflection is to be rendered again.
+ *
+ * Water is rarely the focus of attention, hence the reflection is rendered only every few frames, unless the camera
+ * moves or rotates far enough since the last update for the stale reflection to be off by more than
+ * maxReprojectionError pixels of the buffer. The thresholds follow from the field of view and the height of the
+ * buffer: the rotation is compared to the angle covered by a pixel, the movement to the distance covered by a pixel
+ * at referenceDepth blocks from the camera. Hence the reflection is kept mostly while the camera stands still.
+ * In the remaining frames the content of the buffer is left as it is, and the nodes rendering into it, i.e. the
+ * BackdropReflectionNode and the WorldReflectionNode, skip their work by checking isUpdatingReflection().
+ *
+ * The reflection is not rendered at all while no refractive/reflective blocks are queued for rendering,
+ * i.e. in caves or deserts, as there is no surface to show it on, nor while screen-space reflections
+ * are enabled in their place.
+ */
+public class ReflectedBufferClearingNode extends BufferClearingNode implements PropertyChangeListener {
+    private final SubmersibleCamera activeCamera;
+    private final RenderQueuesHelper renderQueues;
+    private final RenderingConfig renderingConfig;
+    private final BaseFboManager fboManager;
+    private final SimpleUri fboUri;
+
+    private final Vector3f lastUpdatePosition = new Vector3f();
+    private final Vector3f lastUpdateViewingDirection = new Vector3f();
+    private int framesSinceLastUpdate;
+    private boolean isUpdateRequired = true;
+    private boolean isUpdatingReflection = true;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 1.0f, max = 16.0f)
+    private float updateInterval = 4.0f;
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 0.0f, max = 4.0f)
+    private float maxReprojectionError = 1.0f;
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 1.0f, max = 128.0f)
+    private float referenceDepth = 16.0f;
+
+    public ReflectedBufferClearingNode(String nodeUri, Name providingModule, Context context, FboConfig fboConfig,
+                                       BaseFboManager fboManager, int clearingMask) {
+        super(nodeUri, providingModule, context, fboConfig, fboManager, clearingMask);
+
+        activeCamera = context.get(WorldRenderer.class).getActiveCamera();
+        renderQueues = context.get(RenderQueuesHelper.class);
+        renderingConfig = context.get(Config.class).getRendering();
+        this.fboManager = fboManager;
+        fboUri = fboConfig.getName();
+    }
+
+    @Override
+    public void setDependencies(Context context) {
+        super.setDependencies(context);
+
+        // The content of the buffer is lost when it is regenerated, and is not up to date after reflections are enabled.
+        context.get(DisplayResolutionDependentFbo.class).subscribe(POST_FBO_REGENERATION, this);
+        renderingConfig.subscribe(RenderingConfig.REFLECTIVE_WATER, this);
+        renderingConfig.subscribe(RenderingConfig.LOCAL_REFLECTIONS, this);
+    }
+
+    /**
+     * @return true if the reflection is rendered again in the current frame, false if the buffer still holds
+     * the reflection rendered in a previous frame.
+     */
+    public boolean isUpdatingReflection() {
+        return isUpdatingReflection;
+    }
+
+    @Override
+    public void process() {
+        if (renderQueues.chunksAlphaBlend.isEmpty() || renderingConfig.isLocalReflections()) {
+            isUpdatingReflection = false;
+            // Whatever the buffer holds is outdated by the time water comes into view again.
+            isUpdateRequired = true;
+            return;
+        }
+
+        framesSinceLastUpdate++;
+
+        final float pixelAngle = (float) Math.toRadians(renderingConfig.getFieldOfView()) / fboManager.get(fboUri).height();
+        final float maxCameraRotation = maxReprojectionError * pixelAngle;
+        final float maxCameraMovement = maxCameraRotation * referenceDepth;
+
+        isUpdatingReflection = isUpdateRequired
+                || framesSinceLastUpdate >= updateInterval
+                || activeCamera.getPosition().distanceSquared(lastUpdatePosition) > maxCameraMovement * maxCameraMovement
+                || activeCamera.getViewingDirection().angle(lastUpdateViewingDirection) > maxCameraRotation;
+
+        if (isUpdatingReflection) {
+            lastUpdatePosition.set(activeCamera.getPosition());
+            lastUpdateViewingDirection.set(activeCamera.getViewingDirection());
+            framesSinceLastUpdate = 0;
+            isUpdateRequired = false;
+
+            super.process();
+        }
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        isUpdateRequired = true;
+    }
+}
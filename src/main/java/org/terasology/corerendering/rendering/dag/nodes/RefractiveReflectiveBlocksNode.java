@@ -5,14 +5,15 @@ package org.terasology.corerendering.rendering.dag.nodes;
 import org.joml.Matrix3f;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.corerendering.monitoring.RenderingProfiler;
+import org.terasology.corerendering.rendering.MaterialUniformCache;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.shader.ShaderProgramFeature;
-import org.terasology.engine.rendering.backdrop.BackdropProvider;
 import org.terasology.engine.rendering.cameras.SubmersibleCamera;
 import org.terasology.engine.rendering.dag.AbstractNode;
 import org.terasology.engine.rendering.dag.StateChange;
@@ -27,7 +28,6 @@ import org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo
 import org.terasology.engine.rendering.primitives.ChunkMesh;
 import org.terasology.engine.rendering.world.RenderQueuesHelper;
 import org.terasology.engine.rendering.world.WorldRenderer;
-import org.terasology.engine.world.WorldProvider;
 import org.terasology.engine.world.chunks.RenderableChunk;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.naming.Name;
@@ -36,6 +36,13 @@ import org.terasology.nui.properties.Range;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glDisable;
+import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL32.GL_TEXTURE_CUBE_MAP_SEAMLESS;
 import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo.FboTexturesTypes.ColorTexture;
 import static org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo.POST_FBO_REGENERATION;
 import static org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo.PRE_FBO_REGENERATION;
@@ -54,7 +61,9 @@ import static org.terasology.engine.rendering.primitives.ChunkMesh.RenderPhase.R
  *
  * Note: a third "Reflections" video setting enables Screen-space Reflections (SSR),
  * an experimental feature. It produces initially appealing reflections but rotating the
- * camera partially spoils the effect showing its limits.
+ * camera partially spoils the effect showing its limits. With SSR the planar reflection is
+ * not rendered: this node reflects the sky cubemap instead, and the PrePostCompositeNode
+ * traces the reflected landscape in screen space.
  */
 public class RefractiveReflectiveBlocksNode extends AbstractNode implements PropertyChangeListener {
     public static final SimpleUri REFRACTIVE_REFLECTIVE_FBO_URI = new SimpleUri("engine:fbo.sceneReflectiveRefractive");
@@ -83,16 +92,24 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
     public static float waterOffsetY;
 
     private static final ResourceUrn CHUNK_MATERIAL_URN = new ResourceUrn("CoreRendering:chunk");
+    private static final int SKY_CUBEMAP_SLOT = 9;
+
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private final Matrix4f modelViewMatrix = new Matrix4f();
+    private final Matrix3f normalMatrix = new Matrix3f();
+    private final Matrix3f invViewRotation = new Matrix3f();
+
+    private final SkyCubemapNode skyCubemapNode;
 
     private RenderQueuesHelper renderQueues;
     private WorldRenderer worldRenderer;
-    private BackdropProvider backdropProvider;
     private RenderingConfig renderingConfig;
-    private WorldProvider worldProvider;
 
     private DisplayResolutionDependentFbo displayResolutionDependentFbo;
 
     private Material chunkMaterial;
+    private MaterialUniformCache chunkUniforms;
 
     private FBO lastUpdatedGBuffer;
     private FBO refractiveReflectiveFbo;
@@ -102,9 +119,11 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
     private boolean normalMappingIsEnabled;
     private boolean parallaxMappingIsEnabled;
     private boolean animatedWaterIsEnabled;
+    private boolean localReflectionsAreEnabled;
 
     private StateChange setTerrainNormalsInputTexture;
     private StateChange setTerrainHeightInputTexture;
+    private StateChange setWaterReflectionInputTexture;
 
     @SuppressWarnings("FieldCanBeLocal")
     @Range(min = 0.0f, max = 2.0f)
@@ -135,19 +154,16 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
     @Range(min = 0.0f, max = 0.50f)
     private float parallaxScale = 0.5f;
 
-    @SuppressWarnings("FieldCanBeLocal")
-    private Vector3f sunDirection;
-
-    public RefractiveReflectiveBlocksNode(String nodeUri, Name providingModule, Context context) {
+    public RefractiveReflectiveBlocksNode(String nodeUri, Name providingModule, Context context, SkyCubemapNode skyCubemapNode) {
         super(nodeUri, providingModule, context);
 
+        this.skyCubemapNode = skyCubemapNode;
+
         // TODO This is a temporary hack, see RefractiveReflectiveBlocksNodeProxy's doc
         RefractiveReflectiveBlocksNodeProxy.updateWaterAttributes(waveIntensity, waveIntensityFalloff, waveSize,
                                                                   waveSizeFalloff, waveSpeed, waveSpeedFalloff, waterOffsetY);
 
         renderQueues = context.get(RenderQueuesHelper.class);
-        backdropProvider = context.get(BackdropProvider.class);
-        worldProvider = context.get(WorldProvider.class);
 
         worldRenderer = context.get(WorldRenderer.class);
         activeCamera = worldRenderer.getActiveCamera();
@@ -155,12 +171,15 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
         chunkMaterial = getMaterial(CHUNK_MATERIAL_URN);
 
         renderingConfig = context.get(Config.class).getRendering();
+        chunkUniforms = new MaterialUniformCache(chunkMaterial, renderingActivity, renderingConfig);
         normalMappingIsEnabled = renderingConfig.isNormalMapping();
         renderingConfig.subscribe(RenderingConfig.NORMAL_MAPPING, this);
         parallaxMappingIsEnabled = renderingConfig.isParallaxMapping();
         renderingConfig.subscribe(RenderingConfig.PARALLAX_MAPPING, this);
         animatedWaterIsEnabled = renderingConfig.isAnimateWater();
         renderingConfig.subscribe(RenderingConfig.ANIMATE_WATER, this);
+        localReflectionsAreEnabled = renderingConfig.isLocalReflections();
+        renderingConfig.subscribe(RenderingConfig.LOCAL_REFLECTIONS, this);
 
         addOutputBufferPairConnection(1);
         addOutputFboConnection(1);
@@ -183,7 +202,6 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
         displayResolutionDependentFbo.subscribe(PRE_FBO_REGENERATION, this);
         displayResolutionDependentFbo.subscribe(POST_FBO_REGENERATION, this);
 
-
         addDesiredStateChange(new BindFbo(refractiveReflectiveFbo));
         addDesiredStateChange(new EnableMaterial(CHUNK_MATERIAL_URN));
         int textureSlot = 0;
@@ -192,7 +210,11 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
         addDesiredStateChange(new SetInputTexture2D(textureSlot++, "engine:waterStill", CHUNK_MATERIAL_URN, "textureWater"));
         addDesiredStateChange(new SetInputTexture2D(textureSlot++, "engine:waterNormal", CHUNK_MATERIAL_URN, "textureWaterNormal"));
         addDesiredStateChange(new SetInputTexture2D(textureSlot++, "engine:waterNormalAlt", CHUNK_MATERIAL_URN, "textureWaterNormalAlt"));
-        addDesiredStateChange(new SetInputTextureFromFbo(textureSlot++, getInputFboData(2), ColorTexture, displayResolutionDependentFbo, CHUNK_MATERIAL_URN, "textureWaterReflection"));
+        // Only sampled by the planar reflections: the shader compiles it out when local reflections are enabled.
+        setWaterReflectionInputTexture = new SetInputTextureFromFbo(textureSlot++, getInputFboData(2), ColorTexture, displayResolutionDependentFbo, CHUNK_MATERIAL_URN, "textureWaterReflection");
+        if (!localReflectionsAreEnabled) {
+            addDesiredStateChange(setWaterReflectionInputTexture);
+        }
         addDesiredStateChange(new SetInputTextureFromFbo(textureSlot++, lastUpdatedGBuffer, ColorTexture, displayResolutionDependentFbo, CHUNK_MATERIAL_URN, "texSceneOpaque"));
 
         setTerrainNormalsInputTexture = new SetInputTexture2D(textureSlot++, "engine:terrainNormal", CHUNK_MATERIAL_URN, "textureAtlasNormal");
@@ -216,54 +238,68 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
      * - WorldRenderer.increaseNotReadyChunkCount(int)
      *
      * to publish some statistics over its own activity.
+     *
+     * Nothing is done if no refractive/reflective blocks are queued: the buffer is then left as cleared by
+     * the preceding BufferClearingNode, which is what the PrePostCompositeNode expects where there is no water.
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        if (renderQueues.chunksAlphaBlend.isEmpty()) {
+            return;
+        }
 
-        chunkMaterial.activateFeature(ShaderProgramFeature.FEATURE_REFRACTIVE_PASS);
+        renderingActivity.start();
 
-        // Common Shader Parameters
+        chunkUniforms.activateFeature(ShaderProgramFeature.FEATURE_REFRACTIVE_PASS);
 
-        sunDirection = backdropProvider.getSunDirection(false);
+        // Common Shader Parameters
 
-        chunkMaterial.setFloat("daylight", backdropProvider.getDaylight(), true);
-        chunkMaterial.setFloat("swimming", activeCamera.isUnderWater() ? 1.0f : 0.0f, true);
-        chunkMaterial.setFloat("time", worldProvider.getTime().getDays(), true);
-        chunkMaterial.setFloat3("sunVec", sunDirection, true);
+        chunkUniforms.setFloat("swimming", activeCamera.isUnderWater() ? 1.0f : 0.0f);
 
         // Specific Shader Parameters
 
-        // TODO: This is necessary right now because activateFeature removes all material parameters.
-        // TODO: Remove this explicit binding once we get rid of activateFeature, or find a way to retain parameters through it.
-        chunkMaterial.setInt("textureAtlas", 0, true);
-        chunkMaterial.setInt("textureEffects", 1, true);
-        chunkMaterial.setInt("textureWater", 2, true);
-        chunkMaterial.setInt("textureWaterNormal", 3, true);
-        chunkMaterial.setInt("textureWaterNormalAlt", 4, true);
-        chunkMaterial.setInt("textureWaterReflection", 5, true);
-        chunkMaterial.setInt("texSceneOpaque", 6, true);
+        // The refractive pass uses a program of its own, on which the texture slots set by the state changes
+        // are not set. The uniform cache only issues these calls the first time around.
+        chunkUniforms.setInt("textureAtlas", 0);
+        chunkUniforms.setInt("textureEffects", 1);
+        chunkUniforms.setInt("textureWater", 2);
+        chunkUniforms.setInt("textureWaterNormal", 3);
+        chunkUniforms.setInt("textureWaterNormalAlt", 4);
+        if (!localReflectionsAreEnabled) {
+            chunkUniforms.setInt("textureWaterReflection", 5);
+        }
+        chunkUniforms.setInt("texSceneOpaque", 6);
         if (normalMappingIsEnabled) {
-            chunkMaterial.setInt("textureAtlasNormal", 7, true);
+            chunkUniforms.setInt("textureAtlasNormal", 7);
         }
         if (parallaxMappingIsEnabled) {
-            chunkMaterial.setInt("textureAtlasHeight", 8, true);
-            chunkMaterial.setFloat4("parallaxProperties", parallaxBias, parallaxScale, 0.0f, 0.0f, true);
+            chunkUniforms.setInt("textureAtlasHeight", 8);
+            chunkUniforms.setFloat4("parallaxProperties", parallaxBias, parallaxScale, 0.0f, 0.0f);
         }
 
-        chunkMaterial.setFloat4("lightingSettingsFrag", 0, 0, waterSpecExp, 0, true);
-        chunkMaterial.setFloat4("waterSettingsFrag", waterNormalBias, waterRefraction, waterFresnelBias, waterFresnelPow, true);
-        chunkMaterial.setFloat4("alternativeWaterSettingsFrag", waterTint, 0, 0, 0, true);
+        if (localReflectionsAreEnabled) {
+            // No state change is available for cubemaps: the texture unit is restored at the end of process().
+            glActiveTexture(GL_TEXTURE0 + SKY_CUBEMAP_SLOT);
+            glBindTexture(GL_TEXTURE_CUBE_MAP, skyCubemapNode.getCubemap());
+            glActiveTexture(GL_TEXTURE0);
+            glEnable(GL_TEXTURE_CUBE_MAP_SEAMLESS);
+            chunkUniforms.setInt("skyCubemap", SKY_CUBEMAP_SLOT);
+            chunkUniforms.setMatrix3("invViewRotation", activeCamera.getViewMatrix().get3x3(invViewRotation).transpose());
+        }
+
+        chunkUniforms.setFloat4("lightingSettingsFrag", 0, 0, waterSpecExp, 0);
+        chunkUniforms.setFloat4("waterSettingsFrag", waterNormalBias, waterRefraction, waterFresnelBias, waterFresnelPow);
+        chunkUniforms.setFloat4("alternativeWaterSettingsFrag", waterTint, 0, 0, 0);
 
         if (animatedWaterIsEnabled) {
-            chunkMaterial.setFloat("waveIntensityFalloff", waveIntensityFalloff, true);
-            chunkMaterial.setFloat("waveSizeFalloff", waveSizeFalloff, true);
-            chunkMaterial.setFloat("waveSize", waveSize, true);
-            chunkMaterial.setFloat("waveSpeedFalloff", waveSpeedFalloff, true);
-            chunkMaterial.setFloat("waveSpeed", waveSpeed, true);
-            chunkMaterial.setFloat("waveIntensity", waveIntensity, true);
-            chunkMaterial.setFloat("waterOffsetY", waterOffsetY, true);
-            chunkMaterial.setFloat("waveOverallScale", waveOverallScale, true);
+            chunkUniforms.setFloat("waveIntensityFalloff", waveIntensityFalloff);
+            chunkUniforms.setFloat("waveSizeFalloff", waveSizeFalloff);
+            chunkUniforms.setFloat("waveSize", waveSize);
+            chunkUniforms.setFloat("waveSpeedFalloff", waveSpeedFalloff);
+            chunkUniforms.setFloat("waveSpeed", waveSpeed);
+            chunkUniforms.setFloat("waveIntensity", waveIntensity);
+            chunkUniforms.setFloat("waterOffsetY", waterOffsetY);
+            chunkUniforms.setFloat("waveOverallScale", waveOverallScale);
         }
 
         // Actual Node Processing
@@ -273,12 +309,6 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
 
         final Vector3f cameraPosition = activeCamera.getPosition();
 
-        Matrix4f modelViewMatrix = new Matrix4f();
-        Matrix4f model = new Matrix4f();
-        Matrix3f normalMat = new Matrix3f();
-
-        chunkMaterial.setMatrix4("projectionMatrix", activeCamera.getProjectionMatrix(), true);
-
         while (renderQueues.chunksAlphaBlend.size() > 0) {
             RenderableChunk chunk = renderQueues.chunksAlphaBlend.poll();
 
@@ -286,12 +316,11 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
                 final ChunkMesh chunkMesh = chunk.getMesh();
                 final Vector3f chunkPosition = chunk.getRenderPosition();
 
-                model.setTranslation(chunkPosition.x() - cameraPosition.x(),
+                modelViewMatrix.set(activeCamera.getViewMatrix()).translate(chunkPosition.x() - cameraPosition.x(),
                         chunkPosition.y() - cameraPosition.y(),
                         chunkPosition.z() - cameraPosition.z());
-                modelViewMatrix.set(activeCamera.getViewMatrix()).mul(model);
                 chunkMaterial.setMatrix4("modelViewMatrix", modelViewMatrix, true);
-                chunkMaterial.setMatrix3("normalMatrix", modelViewMatrix.normal(normalMat), true);
+                chunkMaterial.setMatrix3("normalMatrix", modelViewMatrix.normal(normalMatrix), true);
 
                 chunkMesh.updateMaterial(chunkMaterial, chunkPosition, chunk.isAnimated());
                 numberOfRenderedTriangles += chunkMesh.render(REFRACTIVE);
@@ -302,11 +331,25 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
         }
 
         worldRenderer.increaseTrianglesCount(numberOfRenderedTriangles);
+        RenderingProfiler.addTriangles(numberOfRenderedTriangles);
         worldRenderer.increaseNotReadyChunkCount(numberOfChunksThatAreNotReadyYet);
 
-        chunkMaterial.deactivateFeature(ShaderProgramFeature.FEATURE_REFRACTIVE_PASS);
+        chunkUniforms.deactivateFeature(ShaderProgramFeature.FEATURE_REFRACTIVE_PASS);
 
-        PerformanceMonitor.endActivity();
+        if (localReflectionsAreEnabled) {
+            glDisable(GL_TEXTURE_CUBE_MAP_SEAMLESS);
+            glActiveTexture(GL_TEXTURE0 + SKY_CUBEMAP_SLOT);
+            glBindTexture(GL_TEXTURE_CUBE_MAP, 0);
+            glActiveTexture(GL_TEXTURE0);
+        }
+
+        renderingActivity.end();
+    }
+
+    @Override
+    public void dispose() {
+        chunkUniforms.dispose();
+        super.dispose();
     }
 
     @Override
@@ -344,6 +387,15 @@ public class RefractiveReflectiveBlocksNode extends AbstractNode implements Prop
                 animatedWaterIsEnabled = renderingConfig.isAnimateWater();
                 break;
 
+            case RenderingConfig.LOCAL_REFLECTIONS:
+                localReflectionsAreEnabled = renderingConfig.isLocalReflections();
+                if (localReflectionsAreEnabled) {
+                    removeDesiredStateChange(setWaterReflectionInputTexture);
+                } else {
+                    addDesiredStateChange(setWaterReflectionInputTexture);
+                }
+                break;
+
             // default: no other cases are possible - see subscribe operations in initialize().
         }
 
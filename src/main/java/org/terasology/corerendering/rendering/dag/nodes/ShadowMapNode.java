@@ -6,11 +6,13 @@ import org.joml.Math;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.lwjgl.opengl.GL30;
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.corerendering.monitoring.RenderingProfiler;
+import org.terasology.corerendering.rendering.ChunkLodSelector;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.backdrop.BackdropProvider;
 import org.terasology.engine.rendering.cameras.Camera;
@@ -23,16 +25,23 @@ import org.terasology.engine.rendering.dag.stateChanges.EnableMaterial;
 import org.terasology.engine.rendering.dag.stateChanges.SetFacesToCull;
 import org.terasology.engine.rendering.dag.stateChanges.SetViewportToSizeOf;
 import org.terasology.engine.rendering.opengl.FBO;
+import org.terasology.engine.rendering.opengl.FboConfig;
+import org.terasology.engine.rendering.opengl.fbms.ShadowMapResolutionDependentFbo;
 import org.terasology.engine.rendering.world.RenderQueuesHelper;
 import org.terasology.engine.rendering.world.RenderableWorld;
 import org.terasology.engine.world.chunks.RenderableChunk;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.naming.Name;
+import org.terasology.joml.geom.AABBfc;
 import org.terasology.math.TeraMath;
+import org.terasology.nui.properties.Range;
 
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.lwjgl.opengl.GL11.GL_FRONT;
 import static org.terasology.engine.rendering.primitives.ChunkMesh.RenderPhase.OPAQUE;
@@ -45,6 +54,15 @@ import static org.terasology.engine.rendering.primitives.ChunkMesh.RenderPhase.O
  * Instances of this class:
  * - are enabled and disabled depending on the shadow setting in the rendering config.
  * - in VR mode regenerate the shadow map only once per frame rather than once per-eye.
+ * - only write depth: the shadow map has no color buffer and color writes are disabled, while the shadowMap
+ *   material reads nothing but the vertex positions and does no work per fragment.
+ * - only render the chunks at ChunkLodSelector.FULL_DETAIL. Farther chunks may still cast shadows within
+ *   the shadow map, hence coarser levels are only used once distance culling is enabled on the ChunkLodSelector.
+ * - only render the chunks that can cast a shadow on what the player sees, and fit the shadow map
+ *   around them. See cullShadowCasters() and fitShadowMapBounds().
+ * - optionally split the shadow map into regions and re-render only a few of them each frame.
+ *   See selectRegionsToUpdate(). A new placement of the shadow map is then rendered a few regions per frame
+ *   as well, into a separate FBO. See startReplacement().
  *
  * Diagram of this node can be viewed from:
  * TODO: move diagram to the wiki when this part of the code is stable
@@ -52,40 +70,99 @@ import static org.terasology.engine.rendering.primitives.ChunkMesh.RenderPhase.O
  */
 public class ShadowMapNode extends ConditionDependentNode implements PropertyChangeListener {
     public static final SimpleUri SHADOW_MAP_FBO_URI = new SimpleUri("engine:fbo.sceneShadowMap");
+    public static final SimpleUri SHADOW_MAP_REPLACEMENT_FBO_URI = new SimpleUri("engine:fbo.sceneShadowMapReplacement");
     private static final ResourceUrn SHADOW_MAP_MATERIAL_URN = new ResourceUrn("CoreRendering:shadowMap");
     private static final int SHADOW_FRUSTUM_BOUNDS = 200;
+    // The half-size of the area covered by the shadow map only changes in steps of this size, to avoid
+    // the shadows shimmering as the size of the shadow map texels changes.
+    private static final float SHADOW_BOUNDS_STEP = 16.0f;
+
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private final Vector3f mainLightPosition = new Vector3f();
+    private final Vector3f quantizedMainLightDirection = new Vector3f();
+
+    private final List<RenderableChunk> shadowCasters = new ArrayList<>();
+    private final Matrix4f worldToLightSpace = new Matrix4f();
+    private final Vector3f receiversMin = new Vector3f();
+    private final Vector3f receiversMax = new Vector3f();
+    private final Vector3f castersMin = new Vector3f();
+    private final Vector3f castersMax = new Vector3f();
+    private final Vector3f chunkMin = new Vector3f();
+    private final Vector3f chunkMax = new Vector3f();
+    private final Vector3f point = new Vector3f();
+    private float fittedHalfSize = SHADOW_FRUSTUM_BOUNDS;
+    // The light-space minX, minY, maxX, maxY of each of the shadowCasters.
+    private float[] shadowCasterBounds = new float[1024];
+
+    private final Vector3f placedPlayerPosition = new Vector3f();
+    private final Vector3f candidateMainLightDirection = new Vector3f();
+    private int[] regionAges = new int[1];
+    private boolean[] regionsToUpdate = new boolean[1];
+    private boolean areAllRegionsOutdated = true;
+    private boolean[] regionsToReplace = new boolean[1];
+    private int regionsLeftToReplace;
+    private boolean isReplacing;
+
+    // With more than one region per side, the shadow map is time-sliced: see selectRegionsToUpdate().
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 1.0f, max = 4.0f)
+    private float regionsPerSide = 1.0f;
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 1.0f, max = 16.0f)
+    private float regionsPerFrame = 4.0f;
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 0.0f, max = 100.0f)
+    private float maxPlayerDrift = 32.0f;
+
     private Material shadowMapMaterial;
     private static final float STEP_SIZE = 50f;
 
     public Camera shadowMapCamera = new OrthographicCamera(-SHADOW_FRUSTUM_BOUNDS, SHADOW_FRUSTUM_BOUNDS, SHADOW_FRUSTUM_BOUNDS, -SHADOW_FRUSTUM_BOUNDS);
+    private Camera replacementCamera = new OrthographicCamera(-SHADOW_FRUSTUM_BOUNDS, SHADOW_FRUSTUM_BOUNDS, SHADOW_FRUSTUM_BOUNDS, -SHADOW_FRUSTUM_BOUNDS);
 
     private BackdropProvider backdropProvider;
     private RenderingConfig renderingConfig;
     private RenderQueuesHelper renderQueues;
+    private RenderableWorld renderableWorld;
+    private ChunkLodSelector chunkLodSelector;
+    private ShadowMapResolutionDependentFbo shadowMapResolutionDependentFbo;
 
     private SubmersibleCamera activeCamera;
     private double texelSize;
 
+    private FBO shadowMapFbo;
+    private FBO replacementFbo; // Only allocated while time-sliced.
+
     public ShadowMapNode(String nodeUri, Name providingModule, Context context) {
         super(nodeUri, providingModule, context);
         shadowMapMaterial = getMaterial(SHADOW_MAP_MATERIAL_URN);
 
         renderQueues = context.get(RenderQueuesHelper.class);
+        chunkLodSelector = context.get(ChunkLodSelector.class);
         backdropProvider = context.get(BackdropProvider.class);
         renderingConfig = context.get(Config.class).getRendering();
         addDesiredStateChange(new SetFacesToCull(GL_FRONT));
 
         activeCamera = worldRenderer.getActiveCamera();
 
-        context.get(RenderableWorld.class).setShadowMapCamera(shadowMapCamera);
+        renderableWorld = context.get(RenderableWorld.class);
+        renderableWorld.setShadowMapCamera(shadowMapCamera);
         shadowMapCamera.setzNear(-500.0f);
         shadowMapCamera.setzFar(500.0f);
+        replacementCamera.setzNear(-500.0f);
+        replacementCamera.setzFar(500.0f);
 
         texelSize = calculateTexelSize(renderingConfig.getShadowMapResolution());
         renderingConfig.subscribe(RenderingConfig.SHADOW_MAP_RESOLUTION, this);
 
         requiresCondition(() -> renderingConfig.isDynamicShadows());
         renderingConfig.subscribe(RenderingConfig.DYNAMIC_SHADOWS, this);
+
+        // The shadow map is not cleared by a separate node: when time-sliced, only the regions being updated are cleared.
+        shadowMapResolutionDependentFbo = context.get(ShadowMapResolutionDependentFbo.class);
+        shadowMapFbo = requiresFbo(new FboConfig(SHADOW_MAP_FBO_URI, FBO.Type.NO_COLOR).useDepthBuffer(),
+                shadowMapResolutionDependentFbo);
         addOutputFboConnection(1);
     }
 
@@ -93,7 +170,6 @@ public class ShadowMapNode extends ConditionDependentNode implements PropertyCha
     public void setDependencies(Context context) {
         shadowMapMaterial = getMaterial(SHADOW_MAP_MATERIAL_URN);
 
-        FBO shadowMapFbo = getInputFboData(1);
         addOutputFboConnection(1, shadowMapFbo);
         addDesiredStateChange(new BindFbo(shadowMapFbo));
         addDesiredStateChange(new SetViewportToSizeOf(shadowMapFbo));
@@ -124,11 +200,17 @@ public class ShadowMapNode extends ConditionDependentNode implements PropertyCha
         switch (propertyName) {
             case RenderingConfig.DYNAMIC_SHADOWS:
                 super.propertyChange(event);
+                // The node isn't processed while shadows are disabled, so it can't release the FBO in process().
+                if (!renderingConfig.isDynamicShadows() && replacementFbo != null) {
+                    updateReplacementFbo(false);
+                }
                 break;
 
             case RenderingConfig.SHADOW_MAP_RESOLUTION:
                 int shadowMapResolution = (int) event.getNewValue();
                 texelSize = calculateTexelSize(shadowMapResolution);
+                // The shadow map is regenerated, its content is lost.
+                areAllRegionsOutdated = true;
                 break;
 
             // default: no other cases are possible - see subscribe operations in initialize().
@@ -156,84 +238,458 @@ public class ShadowMapNode extends ConditionDependentNode implements PropertyCha
 
         // TODO: remove this IF statement when VR is handled via parallel nodes, one per eye.
         if (worldRenderer.isFirstRenderingStageForCurrentFrame()) {
-            PerformanceMonitor.startActivity("rendering/" + getUri());
+            renderingActivity.start();
 
             // Actual Node Processing
-            positionShadowMapCamera(); // TODO: extract these calculation into a separate node.
-            shadowMapMaterial.setMatrix4("projectionMatrix", shadowMapCamera.getProjectionMatrix(), true);
+            int regionCount = (int) regionsPerSide;
+            boolean isTimeSliced = regionCount > 1;
+            if (isTimeSliced != (replacementFbo != null)) {
+                updateReplacementFbo(isTimeSliced);
+            }
+            if (isReplacing && (areAllRegionsOutdated || regionsToReplace.length != regionCount * regionCount)) {
+                stopReplacement();
+            }
+            if (!isTimeSliced || areAllRegionsOutdated || regionAges.length != regionCount * regionCount) {
+                positionShadowMapCamera(shadowMapCamera); // TODO: extract these calculation into a separate node.
+                areAllRegionsOutdated = true;
+            }
+
+            Camera camera = isReplacing ? replacementCamera : shadowMapCamera;
+            int numberOfChunksThatAreNotReadyYet = cullShadowCasters(camera, !isTimeSliced);
+            if (!isTimeSliced) {
+                fitShadowMapBounds();
+            }
+            if (isReplacing) {
+                selectRegionsToReplace(regionCount);
+                GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, replacementFbo.getId());
+            } else {
+                selectRegionsToUpdate(regionCount);
+            }
+
+            shadowMapMaterial.setMatrix4("viewProjectionMatrix", camera.getViewProjectionMatrix(), true);
+            GL30.glColorMask(false, false, false, false);
+            GL30.glEnable(GL30.GL_SCISSOR_TEST);
 
             int numberOfRenderedTriangles = 0;
-            int numberOfChunksThatAreNotReadyYet = 0;
-
-            final Vector3f cameraPosition = shadowMapCamera.getPosition();
-
-            Matrix4f modelViewMatrix = new Matrix4f();
-            Matrix4f model = new Matrix4f();
-            // FIXME: storing chunksOpaqueShadow or a mechanism for requesting a chunk queue for nodes which calls renderChunks method?
-            while (renderQueues.chunksOpaqueShadow.size() > 0) {
-                RenderableChunk chunk = renderQueues.chunksOpaqueShadow.poll();
-                if (chunk.hasMesh()) {
-                    model.setTranslation(chunk.getRenderPosition().sub(cameraPosition));
-                    modelViewMatrix.set(shadowMapCamera.getViewMatrix()).mul(model);
-                    shadowMapMaterial.setMatrix4("modelViewMatrix", modelViewMatrix, true);
-                    numberOfRenderedTriangles += chunk.getMesh().render(OPAQUE);
-
-                } else {
-                    numberOfChunksThatAreNotReadyYet++;
+            for (int region = 0; region < regionsToUpdate.length; region++) {
+                if (regionsToUpdate[region]) {
+                    numberOfRenderedTriangles += renderRegion(camera, region % regionCount, region / regionCount, regionCount);
+                }
+            }
+            shadowCasters.clear();
+
+            GL30.glDisable(GL30.GL_SCISSOR_TEST);
+
+            if (isReplacing) {
+                if (regionsLeftToReplace == 0) {
+                    finishReplacement();
                 }
+                // The DAG is not aware of the binding above: as far as it is concerned, the shadow map is still bound.
+                GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, shadowMapFbo.getId());
+            } else if (isTimeSliced && isPlacementOutdated()) {
+                startReplacement();
             }
 
             worldRenderer.increaseTrianglesCount(numberOfRenderedTriangles);
+            RenderingProfiler.addTriangles(numberOfRenderedTriangles);
             worldRenderer.increaseNotReadyChunkCount(numberOfChunksThatAreNotReadyYet);
 
-            PerformanceMonitor.endActivity();
+            GL30.glColorMask(true, true, true, true);
+            renderingActivity.end();
         }
         GL30.glDisable(GL30.GL_POLYGON_OFFSET_FILL);
 
         GL30.glViewport(0, 0, renderingConfig.getWindowWidth(), renderingConfig.getWindowHeight());
     }
 
-    private void positionShadowMapCamera() {
+    /**
+     * Clears the given region of the bound shadow map and renders the shadow casters overlapping it.
+     *
+     * @param camera the camera the shadow casters were culled with.
+     * @return the number of triangles rendered.
+     */
+    private int renderRegion(Camera camera, int regionX, int regionY, int regionCount) {
+        int resolution = renderingConfig.getShadowMapResolution();
+        int left = regionX * resolution / regionCount;
+        int bottom = regionY * resolution / regionCount;
+        GL30.glScissor(left, bottom, (regionX + 1) * resolution / regionCount - left, (regionY + 1) * resolution / regionCount - bottom);
+        GL30.glClear(GL30.GL_DEPTH_BUFFER_BIT);
+
+        // Light-space bounds of the region. Only relevant if time-sliced, in which case the bounds of the shadow map are not fitted.
+        float regionSize = 2.0f * SHADOW_FRUSTUM_BOUNDS / regionCount;
+        float minX = regionX * regionSize - SHADOW_FRUSTUM_BOUNDS;
+        float minY = regionY * regionSize - SHADOW_FRUSTUM_BOUNDS;
+
+        final Vector3f cameraPosition = camera.getPosition();
+        int numberOfRenderedTriangles = 0;
+
+        for (int i = 0; i < shadowCasters.size(); i++) {
+            if (regionCount > 1 && (shadowCasterBounds[4 * i + 2] < minX || shadowCasterBounds[4 * i] > minX + regionSize
+                    || shadowCasterBounds[4 * i + 3] < minY || shadowCasterBounds[4 * i + 1] > minY + regionSize)) {
+                continue;
+            }
+
+            RenderableChunk chunk = shadowCasters.get(i);
+            final Vector3f chunkPosition = chunk.getRenderPosition();
+            shadowMapMaterial.setFloat3("chunkOffset", chunkPosition.x - cameraPosition.x,
+                    chunkPosition.y - cameraPosition.y,
+                    chunkPosition.z - cameraPosition.z, true);
+            int numberOfChunkTriangles = chunk.getMesh().render(OPAQUE);
+            numberOfRenderedTriangles += numberOfChunkTriangles;
+            renderingActivity.countTriangles(ChunkLodSelector.FULL_DETAIL, numberOfChunkTriangles);
+        }
+        return numberOfRenderedTriangles;
+    }
+
+    /**
+     * When time-sliced, the shadow map camera stays where it is for as long as possible, as the regions not updated
+     * in a given frame must have been rendered with the same camera. It is only replaced once the quantized main light
+     * direction changes or the player moves too far from where the camera was placed. See startReplacement().
+     */
+    private boolean isPlacementOutdated() {
+        getQuantizedMainLightDirection(STEP_SIZE, candidateMainLightDirection);
+        Vector3f playerPosition = activeCamera.getPosition();
+        float driftX = playerPosition.x - placedPlayerPosition.x;
+        float driftZ = playerPosition.z - placedPlayerPosition.z;
+
+        return !candidateMainLightDirection.equals(quantizedMainLightDirection)
+                || driftX * driftX + driftZ * driftZ > maxPlayerDrift * maxPlayerDrift;
+    }
+
+    /**
+     * Places the replacement camera, then renders the shadow map it sees into the replacement FBO over the next frames,
+     * regionsPerFrame regions at a time. Meanwhile the lighting nodes keep using the shadow map and its camera as they
+     * are, while the shadow casters are culled with the replacement camera. See finishReplacement().
+     *
+     * The shadow queue for the current frame has already been filled using the shadow map camera, hence the first
+     * regions are rendered in the next frame.
+     */
+    private void startReplacement() {
+        positionShadowMapCamera(replacementCamera);
+        renderableWorld.setShadowMapCamera(replacementCamera);
+
+        if (regionsToReplace.length != regionAges.length) {
+            regionsToReplace = new boolean[regionAges.length];
+        }
+        Arrays.fill(regionsToReplace, true);
+        regionsLeftToReplace = regionsToReplace.length;
+        isReplacing = true;
+    }
+
+    /**
+     * Copies the replacement FBO into the shadow map and the placement of the replacement camera into the shadow map
+     * camera, so that the lighting nodes switch to the new placement all at once.
+     */
+    private void finishReplacement() {
+        GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, replacementFbo.getId());
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, shadowMapFbo.getId());
+        GL30.glBlitFramebuffer(0, 0, replacementFbo.width(), replacementFbo.height(),
+                0, 0, shadowMapFbo.width(), shadowMapFbo.height(), GL30.GL_DEPTH_BUFFER_BIT, GL30.GL_NEAREST);
+
+        shadowMapCamera.getPosition().set(replacementCamera.getPosition());
+        shadowMapCamera.getViewingDirection().set(replacementCamera.getViewingDirection());
+        shadowMapCamera.updateMatrices();
+
+        Arrays.fill(regionAges, 0);
+        stopReplacement();
+    }
+
+    private void stopReplacement() {
+        renderableWorld.setShadowMapCamera(shadowMapCamera);
+        regionsLeftToReplace = 0;
+        isReplacing = false;
+    }
+
+    private void updateReplacementFbo(boolean isAllocated) {
+        if (isAllocated) {
+            replacementFbo = shadowMapResolutionDependentFbo.request(
+                    new FboConfig(SHADOW_MAP_REPLACEMENT_FBO_URI, FBO.Type.NO_COLOR).useDepthBuffer());
+        } else {
+            stopReplacement();
+            shadowMapResolutionDependentFbo.release(SHADOW_MAP_REPLACEMENT_FBO_URI);
+            replacementFbo = null;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (replacementFbo != null) {
+            shadowMapResolutionDependentFbo.release(SHADOW_MAP_REPLACEMENT_FBO_URI);
+        }
+        super.dispose();
+    }
+
+    /**
+     * Picks the regions of the shadow map to render in the current frame, at most regionsPerFrame of them,
+     * unless all regions are outdated.
+     *
+     * Regions are updated less often the farther they are from the region the player is in, the latter being
+     * updated every frame: a region is due for an update once as many frames have passed since its last update
+     * as the number of regions between it and the player's region, plus one. The most overdue regions go first.
+     * This way changes in the world show up in the shadows within a few frames, starting from the player's
+     * surroundings.
+     */
+    private void selectRegionsToUpdate(int regionCount) {
+        if (regionAges.length != regionCount * regionCount) {
+            regionAges = new int[regionCount * regionCount];
+            regionsToUpdate = new boolean[regionCount * regionCount];
+            areAllRegionsOutdated = true;
+        }
+
+        if (areAllRegionsOutdated || regionCount == 1) {
+            Arrays.fill(regionAges, 0);
+            Arrays.fill(regionsToUpdate, true);
+            areAllRegionsOutdated = false;
+            return;
+        }
+
+        int playerRegion = getPlayerRegion(regionCount);
+
+        Arrays.fill(regionsToUpdate, false);
+        for (int region = 0; region < regionAges.length; region++) {
+            regionAges[region]++;
+        }
+
+        for (int update = 0; update < (int) regionsPerFrame; update++) {
+            int mostOverdueRegion = -1;
+            float highestOverdueness = 1.0f;
+            for (int region = 0; region < regionAges.length; region++) {
+                float overdueness = (float) regionAges[region] / (getRegionDistance(region, playerRegion, regionCount) + 1);
+                if (!regionsToUpdate[region] && overdueness >= highestOverdueness) {
+                    mostOverdueRegion = region;
+                    highestOverdueness = overdueness;
+                }
+            }
+            if (mostOverdueRegion < 0) {
+                break;
+            }
+            regionsToUpdate[mostOverdueRegion] = true;
+            regionAges[mostOverdueRegion] = 0;
+        }
+    }
+
+    /**
+     * Picks the regions of the replacement shadow map to render in the current frame, at most regionsPerFrame of them,
+     * starting from the player's region and moving outward.
+     */
+    private void selectRegionsToReplace(int regionCount) {
+        int playerRegion = getPlayerRegion(regionCount);
+
+        Arrays.fill(regionsToUpdate, false);
+        for (int update = 0; update < (int) regionsPerFrame && regionsLeftToReplace > 0; update++) {
+            int closestRegion = -1;
+            int smallestDistance = Integer.MAX_VALUE;
+            for (int region = 0; region < regionsToReplace.length; region++) {
+                int distance = getRegionDistance(region, playerRegion, regionCount);
+                if (regionsToReplace[region] && distance < smallestDistance) {
+                    closestRegion = region;
+                    smallestDistance = distance;
+                }
+            }
+            regionsToReplace[closestRegion] = false;
+            regionsToUpdate[closestRegion] = true;
+            regionsLeftToReplace--;
+        }
+    }
+
+    /**
+     * @return the index of the region the player is in, in the light space last set by cullShadowCasters().
+     */
+    private int getPlayerRegion(int regionCount) {
+        worldToLightSpace.transformPosition(activeCamera.getPosition(), point);
+        float regionSize = 2.0f * SHADOW_FRUSTUM_BOUNDS / regionCount;
+        int playerRegionX = Math.clamp(0, regionCount - 1, (int) Math.floor((point.x + SHADOW_FRUSTUM_BOUNDS) / regionSize));
+        int playerRegionY = Math.clamp(0, regionCount - 1, (int) Math.floor((point.y + SHADOW_FRUSTUM_BOUNDS) / regionSize));
+        return playerRegionY * regionCount + playerRegionX;
+    }
+
+    /**
+     * @return the distance between the two given regions, in regions, along the axis on which it is the largest.
+     */
+    private static int getRegionDistance(int region, int otherRegion, int regionCount) {
+        return Math.max(Math.abs(region % regionCount - otherRegion % regionCount),
+                Math.abs(region / regionCount - otherRegion / regionCount));
+    }
+
+    /**
+     * Moves the chunks that may cast a shadow on what the player sees from the shadow queue into shadowCasters,
+     * and finds the light-space bounds of the receivers and of the casters.
+     *
+     * The receivers are approximated by the pyramid going from the player's camera toward the corners of its far plane,
+     * cut at a view depth of SHADOW_FRUSTUM_BOUNDS: the shadow map doesn't reach farther anyway. A chunk can only
+     * cast a shadow on the receivers if it overlaps them when seen from the light and if it is not entirely behind
+     * all of them, i.e. if it lies within the receivers' bounds extruded toward the light.
+     *
+     * Light space is the view space of the shadow map camera, which looks down its negative z axis.
+     *
+     * When time-sliced, regions rendered in previous frames are still in use after the player has looked around,
+     * hence the casters are not culled against the receivers, but only against the shadow map's bounds.
+     *
+     * @param camera the camera the shadow map is rendered with, either the shadow map camera or the replacement camera.
+     * @param isCullingAgainstReceivers false to keep all the casters within the bounds of the shadow map.
+     * @return the number of chunks that could not be rendered because their mesh is not ready yet.
+     */
+    private int cullShadowCasters(Camera camera, boolean isCullingAgainstReceivers) {
+        final Vector3f shadowMapCameraPosition = camera.getPosition();
+        worldToLightSpace.set(camera.getViewMatrix())
+                .translate(-shadowMapCameraPosition.x, -shadowMapCameraPosition.y, -shadowMapCameraPosition.z);
+
+        if (isCullingAgainstReceivers) {
+            receiversMin.set(Float.POSITIVE_INFINITY);
+            receiversMax.set(Float.NEGATIVE_INFINITY);
+            addReceiverPoint(activeCamera.getPosition());
+            addReceiverRay(-1.0f, -1.0f);
+            addReceiverRay(1.0f, -1.0f);
+            addReceiverRay(-1.0f, 1.0f);
+            addReceiverRay(1.0f, 1.0f);
+        } else {
+            receiversMin.set(Float.NEGATIVE_INFINITY);
+            receiversMax.set(Float.POSITIVE_INFINITY);
+        }
+        // The shadow map camera is centered on the player: receivers beyond its original bounds can be ignored.
+        receiversMin.x = Math.max(receiversMin.x, -SHADOW_FRUSTUM_BOUNDS);
+        receiversMin.y = Math.max(receiversMin.y, -SHADOW_FRUSTUM_BOUNDS);
+        receiversMax.x = Math.min(receiversMax.x, SHADOW_FRUSTUM_BOUNDS);
+        receiversMax.y = Math.min(receiversMax.y, SHADOW_FRUSTUM_BOUNDS);
+
+        castersMin.set(Float.POSITIVE_INFINITY);
+        castersMax.set(Float.NEGATIVE_INFINITY);
+        int numberOfChunksThatAreNotReadyYet = 0;
+
+        // FIXME: storing chunksOpaqueShadow or a mechanism for requesting a chunk queue for nodes which calls renderChunks method?
+        while (renderQueues.chunksOpaqueShadow.size() > 0) {
+            RenderableChunk chunk = renderQueues.chunksOpaqueShadow.poll();
+            // The level of detail depends on the distance from the player, not from the shadow map camera.
+            if (chunkLodSelector.getLevel(chunk, activeCamera.getPosition()) != ChunkLodSelector.FULL_DETAIL) {
+                continue;
+            }
+
+            AABBfc chunkAabb = chunk.getAABB();
+            worldToLightSpace.transformAab(chunkAabb.minX(), chunkAabb.minY(), chunkAabb.minZ(),
+                    chunkAabb.maxX(), chunkAabb.maxY(), chunkAabb.maxZ(), chunkMin, chunkMax);
+            if (chunkMax.x < receiversMin.x || chunkMin.x > receiversMax.x
+                    || chunkMax.y < receiversMin.y || chunkMin.y > receiversMax.y
+                    || chunkMax.z < receiversMin.z) {
+                continue;
+            }
+
+            if (chunk.hasMesh()) {
+                int offset = 4 * shadowCasters.size();
+                if (offset + 4 > shadowCasterBounds.length) {
+                    shadowCasterBounds = Arrays.copyOf(shadowCasterBounds, 2 * shadowCasterBounds.length);
+                }
+                shadowCasterBounds[offset] = chunkMin.x;
+                shadowCasterBounds[offset + 1] = chunkMin.y;
+                shadowCasterBounds[offset + 2] = chunkMax.x;
+                shadowCasterBounds[offset + 3] = chunkMax.y;
+                shadowCasters.add(chunk);
+                castersMin.min(chunkMin);
+                castersMax.max(chunkMax);
+            } else {
+                numberOfChunksThatAreNotReadyYet++;
+            }
+        }
+        return numberOfChunksThatAreNotReadyYet;
+    }
+
+    /**
+     * Adds the point at a view depth of SHADOW_FRUSTUM_BOUNDS along the ray through the given normalized device
+     * coordinates of the far plane. Cut at that depth rather than at that distance, the pyramid contains all
+     * the receivers within SHADOW_FRUSTUM_BOUNDS of the player, including those bulging past its corner rays.
+     */
+    private void addReceiverRay(float x, float y) {
+        // The matrices of the player's camera are relative to its position, hence the point is too.
+        activeCamera.getInverseViewProjectionMatrix().transformProject(x, y, 1.0f, point);
+        point.mul(SHADOW_FRUSTUM_BOUNDS / point.dot(activeCamera.getViewingDirection()));
+        addReceiverPoint(point.add(activeCamera.getPosition()));
+    }
+
+    private void addReceiverPoint(Vector3f worldPosition) {
+        worldToLightSpace.transformPosition(worldPosition, point);
+        receiversMin.min(point);
+        receiversMax.max(point);
+    }
+
+    /**
+     * Narrows the area covered by the shadow map down to the casters found by cullShadowCasters(), within the
+     * receivers' bounds, so that the shadow map texels cover a smaller area and shadows are sharper.
+     *
+     * The area stays square and its size changes in steps of SHADOW_BOUNDS_STEP. It grows at once but only
+     * shrinks by more than a step, so that looking back and forth doesn't change the texel size back and forth.
+     * Its center is snapped to the texels in a light space anchored to the world origin, rather than to the
+     * shadow map camera, whose steps are no multiple of the fitted texels: the shadows don't shimmer as the
+     * player moves.
+     *
+     * The shadow map camera has fixed bounds: its projection matrix, on which the lighting nodes rely too,
+     * is therefore overridden after the camera has updated its matrices.
+     */
+    private void fitShadowMapBounds() {
+        if (shadowCasters.isEmpty()) {
+            return;
+        }
+
+        float minX = Math.max(castersMin.x, receiversMin.x);
+        float maxX = Math.min(castersMax.x, receiversMax.x);
+        float minY = Math.max(castersMin.y, receiversMin.y);
+        float maxY = Math.min(castersMax.y, receiversMax.y);
+
+        float halfSize = Math.max(maxX - minX, maxY - minY) / 2.0f;
+        halfSize = Math.min((float) Math.ceil(halfSize / SHADOW_BOUNDS_STEP) * SHADOW_BOUNDS_STEP + SHADOW_BOUNDS_STEP,
+                SHADOW_FRUSTUM_BOUNDS);
+        if (halfSize > fittedHalfSize || halfSize < fittedHalfSize - SHADOW_BOUNDS_STEP) {
+            fittedHalfSize = halfSize;
+        }
+        halfSize = fittedHalfSize;
+
+        // The view matrix is rotation only: the camera position in world-anchored light space.
+        shadowMapCamera.getViewMatrix().transformPosition(shadowMapCamera.getPosition(), point);
+        float texelWorldSize = 2.0f * halfSize / renderingConfig.getShadowMapResolution();
+        float centerX = (float) Math.floor(((minX + maxX) / 2.0f + point.x) / texelWorldSize) * texelWorldSize - point.x;
+        float centerY = (float) Math.floor(((minY + maxY) / 2.0f + point.y) / texelWorldSize) * texelWorldSize - point.y;
+
+        shadowMapCamera.getProjectionMatrix().setOrtho(centerX - halfSize, centerX + halfSize,
+                centerY - halfSize, centerY + halfSize, shadowMapCamera.getzNear(), shadowMapCamera.getzFar());
+        shadowMapCamera.getViewProjectionMatrix().set(shadowMapCamera.getProjectionMatrix()).mul(shadowMapCamera.getViewMatrix());
+        shadowMapCamera.getInverseViewProjectionMatrix().set(shadowMapCamera.getViewProjectionMatrix()).invert();
+    }
+
+    private void positionShadowMapCamera(Camera camera) {
         // We begin by setting our light coordinates at the player coordinates, ignoring the player's altitude
-        Vector3f mainLightPosition = new Vector3f(activeCamera.getPosition().x, 0.0f, activeCamera.getPosition().z); // world-space coordinates
+        mainLightPosition.set(activeCamera.getPosition().x, 0.0f, activeCamera.getPosition().z); // world-space coordinates
         // This is what causes the shadow map to change infrequently, to prevent flickering.
         // Notice that this is different from what is done above, which is about spatial steps
         // and is related to the player's position and texels.
-        Vector3f quantizedMainLightDirection = getQuantizedMainLightDirection(STEP_SIZE);
+        getQuantizedMainLightDirection(STEP_SIZE, quantizedMainLightDirection);
 
         // The shadow map camera is placed away from the player, in the direction of the main light.
-        Vector3f offsetFromPlayer = new Vector3f(quantizedMainLightDirection);
-        offsetFromPlayer.mul(64.0f); // these hardcoded numbers are another mystery.
-        mainLightPosition.add(offsetFromPlayer);
+        mainLightPosition.fma(64.0f, quantizedMainLightDirection); // these hardcoded numbers are another mystery.
 
         // Finally, we adjust the shadow map camera to look toward the player
-        Vector3f fromLightToPlayerDirection = new Vector3f(quantizedMainLightDirection);
-        fromLightToPlayerDirection.mul(-1.0f);
-
-        shadowMapCamera.getPosition().set(mainLightPosition);
-        shadowMapCamera.getViewingDirection().set(fromLightToPlayerDirection);
+        camera.getPosition().set(mainLightPosition);
+        quantizedMainLightDirection.negate(camera.getViewingDirection());
 
         // The shadow projected onto the ground must move in in light-space texel-steps, to avoid causing flickering.
         // That's why we first convert it to the previous frame's light-space coordinates and then back to world-space.
-        shadowMapCamera.getViewProjectionMatrix().transformPosition(mainLightPosition); // to light-space
+        camera.getViewProjectionMatrix().transformPosition(mainLightPosition); // to light-space
         mainLightPosition.set(Math.floor(mainLightPosition.x / texelSize) * texelSize, 0.0f,Math.floor(mainLightPosition.z / texelSize) * texelSize);
-        shadowMapCamera.getInverseViewProjectionMatrix().transformPosition(mainLightPosition); // back to world-space
-        shadowMapCamera.getPosition().set(mainLightPosition);
-        shadowMapCamera.updateMatrices();
+        camera.getInverseViewProjectionMatrix().transformPosition(mainLightPosition); // back to world-space
+        camera.getPosition().set(mainLightPosition);
+        camera.updateMatrices();
 
+        placedPlayerPosition.set(activeCamera.getPosition());
     }
 
 
-    private Vector3f getQuantizedMainLightDirection(float stepSize) {
+    private Vector3f getQuantizedMainLightDirection(float stepSize, Vector3f dest) {
         float mainLightAngle = (float) (Math.floor((double) backdropProvider.getSunPositionAngle() * stepSize) / stepSize);
-        Vector3f mainLightDirection = new Vector3f(0.0f, Math.cos(mainLightAngle), Math.sin(mainLightAngle));
+        dest.set(0.0f, Math.cos(mainLightAngle), Math.sin(mainLightAngle));
 
         // When the sun goes under the horizon we flip the vector, to provide the moon direction, and viceversa.
-        if (mainLightDirection.y < 0.0f) {
-            mainLightDirection.mul(-1.0f);
+        if (dest.y < 0.0f) {
+            dest.negate();
         }
 
-        return mainLightDirection;
+        return dest;
     }
 
 }
@@ -0,0 +1,199 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.rendering.dag.nodes;
+
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.engine.config.Config;
+import org.terasology.engine.config.RenderingConfig;
+import org.terasology.engine.context.Context;
+import org.terasology.engine.core.SimpleUri;
+import org.terasology.engine.rendering.assets.material.Material;
+import org.terasology.engine.rendering.assets.mesh.Mesh;
+import org.terasology.engine.rendering.dag.ConditionDependentNode;
+import org.terasology.engine.rendering.dag.StateChange;
+import org.terasology.engine.rendering.dag.stateChanges.BindFbo;
+import org.terasology.engine.rendering.dag.stateChanges.EnableMaterial;
+import org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo;
+import org.terasology.engine.rendering.dag.stateChanges.SetViewportToSizeOf;
+import org.terasology.engine.rendering.opengl.FBO;
+import org.terasology.engine.rendering.opengl.FboConfig;
+import org.terasology.engine.rendering.opengl.fbms.ImmutableFbo;
+import org.terasology.engine.rendering.opengl.fbms.ShadowMapResolutionDependentFbo;
+import org.terasology.engine.utilities.Assets;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.naming.Name;
+
+import java.beans.PropertyChangeEvent;
+
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL30.glGenerateMipmap;
+import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo.FboTexturesTypes.ColorTexture;
+import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo.FboTexturesTypes.DepthStencilTexture;
+
+/**
+ * Instances of this node turn the shadow map into a filterable one, for the DeferredMainLightNode to sample
+ * with a single trilinear fetch per pixel rather than with many PCF taps. This trades a blur at half the shadow map
+ * resolution for the filtering otherwise done for each pixel on screen.
+ *
+ * Two instances are used, one per direction of a separable blur. The first converts the depth stored in the
+ * shadow map into exponential variance shadow map (EVSM) moments while blurring them horizontally, the second
+ * blurs the moments vertically and generates their mipmaps. The moments are stored in a half-float RGBA buffer:
+ * the exponent is kept low enough for the squared moments to fit. The buffers are half the resolution of the
+ * shadow map, each of their texels holding the average moments of 2x2 shadow map texels: the blur and the
+ * trilinear lookup soften the shadows by more than that anyway, and four times less memory is used.
+ *
+ * The nodes do nothing unless moment shadows are enabled on the DeferredMainLightNode. Their FBOs are only
+ * allocated meanwhile, in the ImmutableFbo manager as their size is not the shadow map's, and are looked up by uri
+ * rather than connected, as they come and go with the setting and with the shadow map resolution.
+ * The second node tells the DeferredMainLightNode when the moments are rendered, as they are not in the frame
+ * in which they are allocated.
+ * In VR mode, they only run for the first eye, as the ShadowMapNode does: the moments stay valid for the second eye.
+ */
+public class ShadowMomentsNode extends ConditionDependentNode {
+    public static final SimpleUri SHADOW_MOMENTS_FBO_URI = new SimpleUri("engine:fbo.sceneShadowMoments");
+    public static final SimpleUri SHADOW_MOMENTS_BLUR_FBO_URI = new SimpleUri("engine:fbo.sceneShadowMomentsBlur");
+    public static final float EXPONENT = 5.0f;
+    private static final ResourceUrn SHADOW_MOMENTS_MATERIAL_URN = new ResourceUrn("CoreRendering:shadowMoments");
+
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private final DeferredMainLightNode deferredMainLightNode;
+    private final ShadowMapResolutionDependentFbo shadowMapResolutionDependentFbo;
+    private final ImmutableFbo immutableFbo;
+    private final RenderingConfig renderingConfig;
+    private final SimpleUri outputFboUri;
+    private final boolean isConvertingDepth;
+
+    private Material shadowMomentsMaterial;
+    private Mesh renderQuad;
+
+    private FBO outputFbo; // null while moment shadows are not in use.
+    private StateChange bindOutputFbo;
+    private StateChange setViewportToSizeOfOutputFbo;
+    private StateChange setMomentsInputTexture;
+
+    /**
+     * @param outputFboUri the uri of the FBO to store the blurred moments into.
+     * @param isConvertingDepth true for the first, horizontal, pass reading from the shadow map, false for the
+     *                          second, vertical, pass reading the moments produced by the first.
+     */
+    public ShadowMomentsNode(String nodeUri, Name providingModule, Context context, DeferredMainLightNode deferredMainLightNode,
+                             SimpleUri outputFboUri, boolean isConvertingDepth) {
+        super(nodeUri, providingModule, context);
+
+        this.deferredMainLightNode = deferredMainLightNode;
+        this.outputFboUri = outputFboUri;
+        this.isConvertingDepth = isConvertingDepth;
+        shadowMapResolutionDependentFbo = context.get(ShadowMapResolutionDependentFbo.class);
+        immutableFbo = context.get(ImmutableFbo.class);
+
+        renderingConfig = context.get(Config.class).getRendering();
+        renderingConfig.subscribe(RenderingConfig.DYNAMIC_SHADOWS, this);
+        renderingConfig.subscribe(RenderingConfig.SHADOW_MAP_RESOLUTION, this);
+        requiresCondition(renderingConfig::isDynamicShadows);
+
+        this.renderQuad = Assets.get(new ResourceUrn("engine:ScreenQuad"), Mesh.class)
+                .orElseThrow(() -> new RuntimeException("Failed to resolve render Quad"));
+    }
+
+    @Override
+    public void setDependencies(Context context) {
+        addDesiredStateChange(new EnableMaterial(SHADOW_MOMENTS_MATERIAL_URN));
+        shadowMomentsMaterial = getMaterial(SHADOW_MOMENTS_MATERIAL_URN);
+
+        if (isConvertingDepth) {
+            addDesiredStateChange(new SetInputTextureFromFbo(0, getInputFboData(1), DepthStencilTexture,
+                    shadowMapResolutionDependentFbo, SHADOW_MOMENTS_MATERIAL_URN, "tex"));
+        }
+    }
+
+    @Override
+    public void process() {
+        boolean isUsingMomentShadows = deferredMainLightNode.isUsingMomentShadows();
+        if (isUsingMomentShadows != (outputFbo != null)) {
+            // The output is only bound once the task list is refreshed, hence nothing is rendered this frame.
+            updateOutputFbo(isUsingMomentShadows);
+            return;
+        }
+
+        if (!isUsingMomentShadows || !worldRenderer.isFirstRenderingStageForCurrentFrame()) {
+            return;
+        }
+
+        renderingActivity.start();
+
+        shadowMomentsMaterial.setInt("isConvertingDepth", isConvertingDepth ? 1 : 0, true);
+        shadowMomentsMaterial.setFloat("exponent", EXPONENT, true);
+        if (isConvertingDepth) {
+            shadowMomentsMaterial.setFloat2("texelStep", 1.0f / outputFbo.width(), 0.0f, true);
+        } else {
+            shadowMomentsMaterial.setFloat2("texelStep", 0.0f, 1.0f / outputFbo.height(), true);
+        }
+
+        renderQuad.render();
+
+        if (!isConvertingDepth) {
+            glBindTexture(GL_TEXTURE_2D, outputFbo.getColorBufferTextureId());
+            glGenerateMipmap(GL_TEXTURE_2D);
+            glBindTexture(GL_TEXTURE_2D, 0);
+            deferredMainLightNode.setShadowMomentsRendered(true);
+        }
+
+        renderingActivity.end();
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        super.propertyChange(event);
+
+        // The node isn't processed while shadows are disabled, so it can't release its FBO in process().
+        // After a change of the shadow map resolution, process() allocates the FBO again at the new size.
+        if (outputFbo != null && (!renderingConfig.isDynamicShadows()
+                || event.getPropertyName().equals(RenderingConfig.SHADOW_MAP_RESOLUTION))) {
+            updateOutputFbo(false);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (outputFbo != null) {
+            immutableFbo.release(outputFboUri);
+        }
+        super.dispose();
+    }
+
+    /**
+     * Allocates the output FBO and the state changes using it, or releases them, then refreshes the task list.
+     *
+     * The second pass reads the moments of the first, which allocates them earlier in the same frame.
+     */
+    private void updateOutputFbo(boolean isAllocated) {
+        if (outputFbo != null) {
+            removeDesiredStateChange(bindOutputFbo);
+            removeDesiredStateChange(setViewportToSizeOfOutputFbo);
+            if (!isConvertingDepth) {
+                removeDesiredStateChange(setMomentsInputTexture);
+                deferredMainLightNode.setShadowMomentsRendered(false);
+            }
+            immutableFbo.release(outputFboUri);
+            outputFbo = null;
+        }
+
+        if (isAllocated) {
+            int size = renderingConfig.getShadowMapResolution() / 2;
+            outputFbo = immutableFbo.request(new FboConfig(outputFboUri, size, size, FBO.Type.HDR));
+            bindOutputFbo = new BindFbo(outputFbo);
+            setViewportToSizeOfOutputFbo = new SetViewportToSizeOf(outputFbo);
+            addDesiredStateChange(bindOutputFbo);
+            addDesiredStateChange(setViewportToSizeOfOutputFbo);
+            if (!isConvertingDepth) {
+                setMomentsInputTexture = new SetInputTextureFromFbo(0, immutableFbo.get(SHADOW_MOMENTS_BLUR_FBO_URI),
+                        ColorTexture, immutableFbo, SHADOW_MOMENTS_MATERIAL_URN, "tex");
+                addDesiredStateChange(setMomentsInputTexture);
+            }
+        }
+
+        worldRenderer.requestTaskListRefresh();
+    }
+}
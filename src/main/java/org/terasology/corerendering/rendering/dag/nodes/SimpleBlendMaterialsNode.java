@@ -2,10 +2,10 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.ComponentSystemManager;
 import org.terasology.engine.entitySystem.systems.RenderSystem;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.gestalt.naming.Name;
 import org.terasology.engine.rendering.cameras.Camera;
 import org.terasology.engine.rendering.dag.AbstractNode;
@@ -35,6 +35,8 @@ import static org.lwjgl.opengl.GL11.GL_SRC_ALPHA;
  * semi-transparent objects are handled here, after nodes relying on the depth buffer have done their job.
  */
 public class SimpleBlendMaterialsNode extends AbstractNode {
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private ComponentSystemManager componentSystemManager;
 
     public SimpleBlendMaterialsNode(String nodeUri, Name providingModule, Context context) {
@@ -84,12 +86,12 @@ public class SimpleBlendMaterialsNode extends AbstractNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         for (RenderSystem renderer : componentSystemManager.iterateRenderSubscribers()) {
             renderer.renderAlphaBlend();
         }
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 }
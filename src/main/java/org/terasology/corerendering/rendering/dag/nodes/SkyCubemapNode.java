@@ -0,0 +1,322 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.rendering.dag.nodes;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.joml.Vector4fc;
+import org.lwjgl.BufferUtils;
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.engine.context.Context;
+import org.terasology.engine.rendering.assets.material.Material;
+import org.terasology.engine.rendering.assets.mesh.Mesh;
+import org.terasology.engine.rendering.assets.mesh.SphereBuilder;
+import org.terasology.engine.rendering.backdrop.BackdropProvider;
+import org.terasology.engine.rendering.dag.AbstractNode;
+import org.terasology.engine.utilities.Assets;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.naming.Name;
+import org.terasology.nui.properties.Range;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.GL_BLEND;
+import static org.lwjgl.opengl.GL11.GL_CULL_FACE;
+import static org.lwjgl.opengl.GL11.GL_DEPTH_TEST;
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_S;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_T;
+import static org.lwjgl.opengl.GL11.GL_VIEWPORT;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glDeleteTextures;
+import static org.lwjgl.opengl.GL11.glDisable;
+import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL11.glGenTextures;
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL11.glGetIntegerv;
+import static org.lwjgl.opengl.GL11.glIsEnabled;
+import static org.lwjgl.opengl.GL11.glTexImage2D;
+import static org.lwjgl.opengl.GL11.glTexParameteri;
+import static org.lwjgl.opengl.GL11.glViewport;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL12.GL_TEXTURE_WRAP_R;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE_CUBE_MAP_POSITIVE_X;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT0;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER_BINDING;
+import static org.lwjgl.opengl.GL30.GL_RGBA16F;
+import static org.lwjgl.opengl.GL30.glBindFramebuffer;
+import static org.lwjgl.opengl.GL30.glDeleteFramebuffers;
+import static org.lwjgl.opengl.GL30.glFramebufferTexture2D;
+import static org.lwjgl.opengl.GL30.glGenFramebuffers;
+
+/**
+ * An instance of this node renders the sky into a cubemap, sampled by the BackdropNode and the BackdropReflectionNode
+ * instead of each evaluating the sky model and blending the sky textures on their own.
+ *
+ * The sky changes slowly with the time of the day, hence the cubemap is only rendered again when the sun direction,
+ * the turbidity, the daylight or the color exponent have changed noticeably since it was last rendered.
+ * In most frames this node does nothing.
+ *
+ * The sun and moon highlights are not part of the cubemap: they are too sharp for its resolution and are added
+ * by the nodes sampling it. To this end the alpha channel of the cubemap holds the factor the highlights are
+ * modulated by, i.e. the amount of sky that isn't covered by clouds.
+ *
+ * The nodes sampling the cubemap enable GL_TEXTURE_CUBE_MAP_SEAMLESS while they render, to avoid visible seams
+ * along the edges of the faces, and disable it again afterwards.
+ */
+public class SkyCubemapNode extends AbstractNode {
+    private static final ResourceUrn SKY_BAKE_MATERIAL_URN = new ResourceUrn("CoreRendering:skyBake");
+    private static final int CUBEMAP_SIZE = 256;
+    private static final int FACE_COUNT = 6;
+    private static final int SLICES = 16;
+    private static final int STACKS = 128;
+    private static final int RADIUS = 1024;
+
+    // The cosine of the angle the sun must move by, about a quarter of a degree, for the cubemap to be rendered again.
+    private static final float SUN_DIRECTION_THRESHOLD = 0.99999f;
+    private static final float VALUE_THRESHOLD = 0.002f;
+    // The zenith is computed for the sun angle and turbidity rounded to these steps, so that it can be reused
+    // across re-renders. The sun angle is the cosine of the angle from the zenith.
+    private static final float ZENITH_SUN_ANGLE_STEP = 1.0f / 512.0f;
+    private static final float ZENITH_TURBIDITY_STEP = 1.0f / 32.0f;
+
+    // Coefficients of the zenith chromaticity polynomials, see getAllWeatherZenith().
+    private static final Vector4fc CX1 = new Vector4f(0.0f, 0.00209f, -0.00375f, 0.00165f);
+    private static final Vector4fc CX2 = new Vector4f(0.00394f, -0.03202f, 0.06377f, -0.02903f);
+    private static final Vector4fc CX3 = new Vector4f(0.25886f, 0.06052f, -0.21196f, 0.11693f);
+    private static final Vector4fc CY1 = new Vector4f(0.0f, 0.00317f, -0.00610f, 0.00275f);
+    private static final Vector4fc CY2 = new Vector4f(0.00516f, -0.04153f, 0.08970f, -0.04214f);
+    private static final Vector4fc CY3 = new Vector4f(0.26688f, 0.06670f, -0.26756f, 0.15346f);
+
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private final BackdropProvider backdropProvider;
+    private final Material skyBakeMaterial;
+    private final Mesh sphereMesh;
+
+    private final int cubemap;
+    private final int framebuffer;
+    private final Matrix4f[] faceViewMatrices = new Matrix4f[FACE_COUNT];
+    private final Matrix4f faceProjectionMatrix = new Matrix4f();
+
+    private final Vector3f zenith = new Vector3f();
+    private float zenithSunAngle = Float.NaN;
+    private float zenithTurbidity = Float.NaN;
+
+    private final Vector3f renderedSunDirection = new Vector3f();
+    private final IntBuffer viewport = BufferUtils.createIntBuffer(16);
+    private float renderedTurbidity;
+    private float renderedDaylight;
+    private float renderedColorExp;
+    private float renderedSkyDaylightBrightness;
+    private float renderedSkyNightBrightness;
+    private boolean isRendered;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 0.0f, max = 10.0f)
+    private float skyDaylightBrightness = 0.6f;
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 0.0f, max = 10.0f)
+    private float skyNightBrightness = 1.0f;
+
+    public SkyCubemapNode(String nodeUri, Name providingModule, Context context) {
+        super(nodeUri, providingModule, context);
+
+        backdropProvider = context.get(BackdropProvider.class);
+        skyBakeMaterial = getMaterial(SKY_BAKE_MATERIAL_URN);
+
+        sphereMesh = Assets.generateAsset(new SphereBuilder()
+                        .setVerticalCuts(SLICES)
+                        .setHorizontalCuts(STACKS)
+                        .setRadius(RADIUS)
+                        .setTextured(true).build(),
+                Mesh.class);
+
+        cubemap = glGenTextures();
+        glBindTexture(GL_TEXTURE_CUBE_MAP, cubemap);
+        for (int face = 0; face < FACE_COUNT; face++) {
+            glTexImage2D(GL_TEXTURE_CUBE_MAP_POSITIVE_X + face, 0, GL_RGBA16F, CUBEMAP_SIZE, CUBEMAP_SIZE, 0,
+                    GL_RGBA, GL_FLOAT, (ByteBuffer) null);
+        }
+        glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_CUBE_MAP, GL_TEXTURE_WRAP_R, GL_CLAMP_TO_EDGE);
+        glBindTexture(GL_TEXTURE_CUBE_MAP, 0);
+
+        framebuffer = glGenFramebuffers();
+
+        // The usual orientation of the cubemap faces, as expected by OpenGL when sampling them.
+        faceViewMatrices[0] = new Matrix4f().setLookAt(0, 0, 0, 1, 0, 0, 0, -1, 0);
+        faceViewMatrices[1] = new Matrix4f().setLookAt(0, 0, 0, -1, 0, 0, 0, -1, 0);
+        faceViewMatrices[2] = new Matrix4f().setLookAt(0, 0, 0, 0, 1, 0, 0, 0, 1);
+        faceViewMatrices[3] = new Matrix4f().setLookAt(0, 0, 0, 0, -1, 0, 0, 0, -1);
+        faceViewMatrices[4] = new Matrix4f().setLookAt(0, 0, 0, 0, 0, 1, 0, -1, 0);
+        faceViewMatrices[5] = new Matrix4f().setLookAt(0, 0, 0, 0, 0, -1, 0, -1, 0);
+        faceProjectionMatrix.setPerspective((float) Math.toRadians(90.0), 1.0f, 1.0f, 2.0f * RADIUS);
+    }
+
+    @Override
+    public void setDependencies(Context context) {
+
+    }
+
+    /**
+     * @return the id of the cubemap texture holding the sky, to be bound to the GL_TEXTURE_CUBE_MAP target.
+     */
+    public int getCubemap() {
+        return cubemap;
+    }
+
+    /**
+     * Renders the sky into the cubemap, unless it is still up to date.
+     *
+     * As this node doesn't render every frame, it doesn't rely on state changes: it sets up the state it needs
+     * and restores the previous state on its own, so that the state changes of the following nodes are unaffected.
+     */
+    @Override
+    public void process() {
+        Vector3f sunDirection = backdropProvider.getSunDirection(false);
+        float turbidity = backdropProvider.getTurbidity();
+        float daylight = backdropProvider.getDaylight();
+        float colorExp = backdropProvider.getColorExp();
+
+        if (isRendered
+                && sunDirection.dot(renderedSunDirection) >= SUN_DIRECTION_THRESHOLD
+                && Math.abs(turbidity - renderedTurbidity) < VALUE_THRESHOLD
+                && Math.abs(daylight - renderedDaylight) < VALUE_THRESHOLD
+                && Math.abs(colorExp - renderedColorExp) < VALUE_THRESHOLD
+                && skyDaylightBrightness == renderedSkyDaylightBrightness
+                && skyNightBrightness == renderedSkyNightBrightness) {
+            return;
+        }
+
+        renderingActivity.start();
+
+        renderedSunDirection.set(sunDirection);
+        renderedTurbidity = turbidity;
+        renderedDaylight = daylight;
+        renderedColorExp = colorExp;
+        renderedSkyDaylightBrightness = skyDaylightBrightness;
+        renderedSkyNightBrightness = skyNightBrightness;
+        isRendered = true;
+
+        int previousFramebuffer = glGetInteger(GL_FRAMEBUFFER_BINDING);
+        glGetIntegerv(GL_VIEWPORT, viewport);
+        boolean isCullFaceEnabled = glIsEnabled(GL_CULL_FACE);
+        boolean isDepthTestEnabled = glIsEnabled(GL_DEPTH_TEST);
+        boolean isBlendEnabled = glIsEnabled(GL_BLEND);
+        glDisable(GL_CULL_FACE);
+        glDisable(GL_DEPTH_TEST);
+        glDisable(GL_BLEND);
+
+        skyBakeMaterial.enable();
+        bindSkyTexture(0, "engine:sky90", "texSky90");
+        bindSkyTexture(1, "engine:sky180", "texSky180");
+        skyBakeMaterial.setFloat3("sunDirection", sunDirection.x, sunDirection.y, sunDirection.z, true);
+        skyBakeMaterial.setFloat3("zenith", getZenith(sunDirection.y, turbidity), true);
+        skyBakeMaterial.setFloat("turbidity", turbidity, true);
+        skyBakeMaterial.setFloat("daylight", daylight, true);
+        skyBakeMaterial.setFloat("colorExp", colorExp, true);
+        skyBakeMaterial.setFloat2("skySettings", skyDaylightBrightness, skyNightBrightness, true);
+        skyBakeMaterial.setMatrix4("projectionMatrix", faceProjectionMatrix, true);
+
+        glBindFramebuffer(GL_FRAMEBUFFER, framebuffer);
+        glViewport(0, 0, CUBEMAP_SIZE, CUBEMAP_SIZE);
+        for (int face = 0; face < FACE_COUNT; face++) {
+            glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_CUBE_MAP_POSITIVE_X + face, cubemap, 0);
+            skyBakeMaterial.setMatrix4("modelViewMatrix", faceViewMatrices[face], true);
+            sphereMesh.render();
+        }
+
+        glBindFramebuffer(GL_FRAMEBUFFER, previousFramebuffer);
+        glViewport(viewport.get(0), viewport.get(1), viewport.get(2), viewport.get(3));
+        setEnabled(GL_CULL_FACE, isCullFaceEnabled);
+        setEnabled(GL_DEPTH_TEST, isDepthTestEnabled);
+        setEnabled(GL_BLEND, isBlendEnabled);
+
+        renderingActivity.end();
+    }
+
+    @Override
+    public void dispose() {
+        glDeleteFramebuffers(framebuffer);
+        glDeleteTextures(cubemap);
+        super.dispose();
+    }
+
+    private void bindSkyTexture(int textureSlot, String textureUri, String samplerName) {
+        Assets.getTexture(textureUri).ifPresent(texture -> {
+            glActiveTexture(GL_TEXTURE0 + textureSlot);
+            glBindTexture(GL_TEXTURE_2D, texture.getId());
+        });
+        glActiveTexture(GL_TEXTURE0);
+        skyBakeMaterial.setInt(samplerName, textureSlot, true);
+    }
+
+    private static void setEnabled(int capability, boolean enabled) {
+        if (enabled) {
+            glEnable(capability);
+        } else {
+            glDisable(capability);
+        }
+    }
+
+    /**
+     * The sun moves and the turbidity changes a little between re-renders of the cubemap. Their values are
+     * therefore quantized, and the zenith is only computed again once they change by at least a step.
+     * The cubemap is also rendered again when only the daylight, the color exponent or the brightness change,
+     * in which case the zenith is reused as well.
+     */
+    private Vector3f getZenith(float thetaSunAngle, float turbidity) {
+        float quantizedSunAngle = Math.round(thetaSunAngle / ZENITH_SUN_ANGLE_STEP) * ZENITH_SUN_ANGLE_STEP;
+        float quantizedTurbidity = Math.round(turbidity / ZENITH_TURBIDITY_STEP) * ZENITH_TURBIDITY_STEP;
+        if (quantizedSunAngle != zenithSunAngle || quantizedTurbidity != zenithTurbidity) {
+            zenithSunAngle = quantizedSunAngle;
+            zenithTurbidity = quantizedTurbidity;
+            getAllWeatherZenith(quantizedSunAngle, quantizedTurbidity, zenith);
+        }
+        return zenith;
+    }
+
+    /**
+     * @param thetaSunAngle the cosine of the sun's angle from the zenith, i.e. the y component of the sun direction.
+     * @param dest will hold the luminance and the x and y chromaticity of the sky at the zenith.
+     * @return dest
+     */
+    static Vector3f getAllWeatherZenith(float thetaSunAngle, float turbidity, Vector3f dest) {
+        float thetaSun = (float) Math.acos(thetaSunAngle);
+        float thetaSun2 = thetaSun * thetaSun;
+        float thetaSun3 = thetaSun2 * thetaSun;
+
+        float t2 = turbidity * turbidity;
+        float chi = (4.0f / 9.0f - turbidity / 120.0f) * ((float) Math.PI - 2.0f * thetaSun);
+
+        float why = (4.0453f * turbidity - 4.9710f) * (float) Math.tan(chi) - 0.2155f * turbidity + 2.4192f;
+        float x = t2 * dotTheta(CX1, thetaSun, thetaSun2, thetaSun3) + turbidity * dotTheta(CX2, thetaSun, thetaSun2, thetaSun3)
+                + dotTheta(CX3, thetaSun, thetaSun2, thetaSun3);
+        float y = t2 * dotTheta(CY1, thetaSun, thetaSun2, thetaSun3) + turbidity * dotTheta(CY2, thetaSun, thetaSun2, thetaSun3)
+                + dotTheta(CY3, thetaSun, thetaSun2, thetaSun3);
+
+        return dest.set(why, x, y);
+    }
+
+    /**
+     * @return the dot product of the given coefficients with (1, thetaSun, thetaSun^2, thetaSun^3).
+     */
+    private static float dotTheta(Vector4fc coefficients, float thetaSun, float thetaSun2, float thetaSun3) {
+        return coefficients.x() + coefficients.y() * thetaSun + coefficients.z() * thetaSun2 + coefficients.w() * thetaSun3;
+    }
+}
@@ -0,0 +1,350 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.corerendering.rendering.dag.nodes;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.engine.config.Config;
+import org.terasology.engine.config.RenderingConfig;
+import org.terasology.engine.context.Context;
+import org.terasology.engine.core.SimpleUri;
+import org.terasology.engine.rendering.assets.material.Material;
+import org.terasology.engine.rendering.assets.mesh.Mesh;
+import org.terasology.engine.rendering.cameras.SubmersibleCamera;
+import org.terasology.engine.rendering.dag.AbstractNode;
+import org.terasology.engine.rendering.dag.StateChange;
+import org.terasology.engine.rendering.dag.dependencyConnections.BufferPairConnection;
+import org.terasology.engine.rendering.dag.stateChanges.BindFbo;
+import org.terasology.engine.rendering.dag.stateChanges.EnableMaterial;
+import org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo;
+import org.terasology.engine.rendering.dag.stateChanges.SetViewportToSizeOf;
+import org.terasology.engine.rendering.opengl.FBO;
+import org.terasology.engine.rendering.opengl.FboConfig;
+import org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo;
+import org.terasology.engine.rendering.world.WorldRenderer;
+import org.terasology.engine.utilities.Assets;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.gestalt.naming.Name;
+import org.terasology.nui.properties.Range;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
+import static org.lwjgl.opengl.GL11.GL_NEAREST;
+import static org.lwjgl.opengl.GL30.GL_DRAW_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.GL_READ_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.glBindFramebuffer;
+import static org.lwjgl.opengl.GL30.glBlitFramebuffer;
+import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo.FboTexturesTypes.ColorTexture;
+import static org.terasology.engine.rendering.dag.stateChanges.SetInputTextureFromFbo.FboTexturesTypes.DepthStencilTexture;
+import static org.terasology.engine.rendering.opengl.ScalingFactors.FULL_SCALE;
+import static org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo.POST_FBO_REGENERATION;
+
+/**
+ * An instance of this node implements temporal anti-aliasing (TAA).
+ *
+ * Every frame the projection of the active camera is offset by a different sub-pixel amount (see jitterActiveCamera()
+ * and the ApplyCameraJitterNode), so that each frame samples the scene at slightly different positions. This node
+ * then blends the current frame with the output of the previous frames (the history), reprojected using the depth
+ * buffer and the previous frame's camera. To limit ghosting, the history is clamped to the range of colors
+ * found in the neighborhood of each pixel of the current frame.
+ *
+ * The output FBO can be larger than the scene FBOs: when the render scale is below 100% the history is accumulated
+ * at display resolution, effectively reconstructing a higher resolution image over a few frames (temporal upsampling).
+ *
+ * TAA is disabled by default and can be toggled with the "enable" and "disable" node commands. When disabled,
+ * the node does nothing, the camera is not jittered and the OutputToScreenNode displays the input of this node
+ * directly.
+ *
+ * See https://en.wikipedia.org/wiki/Temporal_anti-aliasing for more information on this technique.
+ */
+public class TemporalAntiAliasingNode extends AbstractNode implements PropertyChangeListener {
+    public static final SimpleUri TAA_FBO_URI = new SimpleUri("engine:fbo.taa");
+    public static final SimpleUri TAA_HISTORY_FBO_URI = new SimpleUri("engine:fbo.taaHistory");
+    private static final ResourceUrn TAA_MATERIAL_URN = new ResourceUrn("CoreRendering:taa");
+
+    // Halton(2, 3) sequence, centered on the pixel: offsets are in the [-0.5, 0.5] range, in pixels.
+    private static final int JITTER_SEQUENCE_LENGTH = 8;
+    private static final float[] JITTER_SEQUENCE = new float[JITTER_SEQUENCE_LENGTH * 2];
+
+    static {
+        for (int i = 0; i < JITTER_SEQUENCE_LENGTH; i++) {
+            JITTER_SEQUENCE[i * 2] = halton(i + 1, 2) - 0.5f;
+            JITTER_SEQUENCE[i * 2 + 1] = halton(i + 1, 3) - 0.5f;
+        }
+    }
+
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private WorldRenderer worldRenderer;
+    private SubmersibleCamera activeCamera;
+    private RenderingConfig renderingConfig;
+    private DisplayResolutionDependentFbo displayResolutionDependentFbo;
+    private OutputToScreenNode outputToScreenNode;
+
+    private Material taaMaterial;
+    private Mesh renderQuad;
+
+    private float outputScale;
+    private FBO sceneFbo;
+    private FBO taaFbo;
+    private FBO historyFbo;
+
+    private StateChange bindTaaFbo;
+    private StateChange setViewportToSizeOfTaaFbo;
+    private StateChange setHistoryInputTexture;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 0.0f, max = 0.98f)
+    private float historyFeedback = 0.9f;
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 0.0f, max = 1.0f)
+    private float jitterScale = 1.0f;
+
+    private boolean isTemporalAntiAliasingEnabled;
+    private boolean isHistoryValid;
+
+    private int jitterIndex;
+    private float jitterX;
+    private float jitterY;
+    private float appliedOffsetX;
+    private float appliedOffsetY;
+
+    // The projection of the active camera without jitter, and the jittered one this node gave the camera last.
+    private Matrix4f unjitteredProjectionMatrix = new Matrix4f();
+    private Matrix4f jitteredProjectionMatrix = new Matrix4f().zero();
+    private Matrix4f viewProjectionMatrix = new Matrix4f();
+    private Matrix4f inverseViewProjectionMatrix = new Matrix4f();
+    private Matrix4f previousViewProjectionMatrix = new Matrix4f();
+    private Vector3f previousCameraPosition = new Vector3f();
+    private Vector3f cameraMotion = new Vector3f();
+
+    public TemporalAntiAliasingNode(String nodeUri, Name providingModule, Context context) {
+        super(nodeUri, providingModule, context);
+
+        worldRenderer = context.get(WorldRenderer.class);
+        activeCamera = worldRenderer.getActiveCamera();
+
+        renderingConfig = context.get(Config.class).getRendering();
+        renderingConfig.subscribe(RenderingConfig.FBO_SCALE, this);
+        outputScale = calculateOutputScale();
+
+        addOutputFboConnection(1);
+        addOutputBufferPairConnection(1);
+
+        this.renderQuad = Assets.get(new ResourceUrn("engine:ScreenQuad"), Mesh.class)
+                .orElseThrow(() -> new RuntimeException("Failed to resolve render Quad"));
+    }
+
+    @Override
+    public void setDependencies(Context context) {
+        displayResolutionDependentFbo = context.get(DisplayResolutionDependentFbo.class);
+
+        taaFbo = requiresFbo(new FboConfig(TAA_FBO_URI, outputScale, FBO.Type.DEFAULT), displayResolutionDependentFbo);
+        historyFbo = requiresFbo(new FboConfig(TAA_HISTORY_FBO_URI, outputScale, FBO.Type.DEFAULT), displayResolutionDependentFbo);
+        bindTaaFbo = new BindFbo(taaFbo);
+        addDesiredStateChange(bindTaaFbo);
+        setViewportToSizeOfTaaFbo = new SetViewportToSizeOf(taaFbo);
+        addDesiredStateChange(setViewportToSizeOfTaaFbo);
+        displayResolutionDependentFbo.subscribe(POST_FBO_REGENERATION, this);
+
+        addDesiredStateChange(new EnableMaterial(TAA_MATERIAL_URN));
+        taaMaterial = getMaterial(TAA_MATERIAL_URN);
+
+        BufferPairConnection bufferPairConnection = getInputBufferPairConnection(1);
+        FBO lastUpdatedGBuffer = bufferPairConnection.getBufferPair().getPrimaryFbo();
+        addOutputBufferPairConnection(1, bufferPairConnection);
+
+        sceneFbo = getInputFboData(1);
+        // While TAA is disabled the input is displayed directly, rather than copied into the output FBO.
+        addOutputFboConnection(1, isTemporalAntiAliasingEnabled ? taaFbo : sceneFbo);
+
+        int textureSlot = 0;
+        addDesiredStateChange(new SetInputTextureFromFbo(textureSlot++, sceneFbo, ColorTexture, displayResolutionDependentFbo, TAA_MATERIAL_URN, "texScene"));
+        addDesiredStateChange(new SetInputTextureFromFbo(textureSlot++, lastUpdatedGBuffer, DepthStencilTexture, displayResolutionDependentFbo, TAA_MATERIAL_URN, "texDepth"));
+        setHistoryInputTexture = new SetInputTextureFromFbo(textureSlot, historyFbo, ColorTexture, displayResolutionDependentFbo, TAA_MATERIAL_URN, "texHistory");
+        addDesiredStateChange(setHistoryInputTexture);
+    }
+
+    /**
+     * When rendering below the display resolution, the history is accumulated at display resolution instead.
+     *
+     * @return the scale of the output FBO in relation to the scene FBOs. Values above 1 enable temporal upsampling.
+     */
+    private float calculateOutputScale() {
+        return FULL_SCALE * 100f / Math.min(100, renderingConfig.getFboScale());
+    }
+
+    /**
+     * Requests the output and history FBOs again, with a scale matching the current render scale.
+     * The scale of an FBO is fixed on creation, hence the FBOs are released first.
+     */
+    private void updateOutputScale() {
+        outputScale = calculateOutputScale();
+
+        displayResolutionDependentFbo.release(TAA_FBO_URI);
+        displayResolutionDependentFbo.release(TAA_HISTORY_FBO_URI);
+        taaFbo = displayResolutionDependentFbo.request(new FboConfig(TAA_FBO_URI, outputScale, FBO.Type.DEFAULT));
+        historyFbo = displayResolutionDependentFbo.request(new FboConfig(TAA_HISTORY_FBO_URI, outputScale, FBO.Type.DEFAULT));
+
+        removeDesiredStateChange(bindTaaFbo);
+        removeDesiredStateChange(setViewportToSizeOfTaaFbo);
+        removeDesiredStateChange(setHistoryInputTexture);
+        bindTaaFbo = new BindFbo(taaFbo);
+        setViewportToSizeOfTaaFbo = new SetViewportToSizeOf(taaFbo);
+        setHistoryInputTexture = new SetInputTextureFromFbo(2, historyFbo, ColorTexture, displayResolutionDependentFbo, TAA_MATERIAL_URN, "texHistory");
+        addDesiredStateChange(bindTaaFbo);
+        addDesiredStateChange(setViewportToSizeOfTaaFbo);
+        addDesiredStateChange(setHistoryInputTexture);
+
+        if (isTemporalAntiAliasingEnabled) {
+            outputToScreenNode.setFbo(taaFbo);
+        }
+        worldRenderer.requestTaskListRefresh();
+    }
+
+    /**
+     * @param outputToScreenNode the node displaying the output of this node, which is pointed at the appropriate FBO
+     *                           whenever TAA is toggled or the output FBO is replaced.
+     */
+    public void setOutputToScreenNode(OutputToScreenNode outputToScreenNode) {
+        this.outputToScreenNode = outputToScreenNode;
+    }
+
+    /**
+     * Offsets the projection matrix of the active camera by the next sub-pixel amount of the jitter sequence,
+     * updating the matrices derived from it. The unjittered matrices are retained for the reprojection of the history.
+     *
+     * This must happen before anything is rendered through the active camera, hence it is triggered by the
+     * ApplyCameraJitterNode, running at the beginning of the render graph.
+     */
+    public void jitterActiveCamera() {
+        if (!isTemporalAntiAliasingEnabled && appliedOffsetX == 0 && appliedOffsetY == 0) {
+            return;
+        }
+
+        Matrix4f projectionMatrix = activeCamera.getProjectionMatrix();
+
+        // The camera only recalculates its matrices when it changes. If it hasn't, it still holds the matrix jittered
+        // by this node, untouched, and the unjittered copy is reused rather than undoing the jitter, which wouldn't
+        // be exact in floating point.
+        if (!projectionMatrix.equals(jitteredProjectionMatrix)) {
+            unjitteredProjectionMatrix.set(projectionMatrix);
+        }
+
+        viewProjectionMatrix.set(unjitteredProjectionMatrix).mul(activeCamera.getViewMatrix());
+        viewProjectionMatrix.invert(inverseViewProjectionMatrix);
+        activeCamera.getPosition().sub(previousCameraPosition, cameraMotion);
+
+        if (isTemporalAntiAliasingEnabled) {
+            jitterIndex = (jitterIndex + 1) % JITTER_SEQUENCE_LENGTH;
+            jitterX = JITTER_SEQUENCE[jitterIndex * 2] * jitterScale;
+            jitterY = JITTER_SEQUENCE[jitterIndex * 2 + 1] * jitterScale;
+
+            // From pixels to normalized device coordinates, which span 2 units across the viewport.
+            appliedOffsetX = 2.0f * jitterX / sceneFbo.width();
+            appliedOffsetY = 2.0f * jitterY / sceneFbo.height();
+        } else {
+            jitterX = 0;
+            jitterY = 0;
+            appliedOffsetX = 0;
+            appliedOffsetY = 0;
+        }
+
+        projectionMatrix.set(unjitteredProjectionMatrix).translateLocal(appliedOffsetX, appliedOffsetY, 0);
+        jitteredProjectionMatrix.set(projectionMatrix);
+
+        activeCamera.getViewProjectionMatrix().set(projectionMatrix).mul(activeCamera.getViewMatrix());
+        activeCamera.getViewProjectionMatrix().invert(activeCamera.getInverseViewProjectionMatrix());
+        projectionMatrix.invert(activeCamera.getInverseProjectionMatrix());
+    }
+
+    /**
+     * Blends the current frame with the reprojected history into the TAA_FBO_URI FBO, which is then copied
+     * into the history FBO for use in the next frame.
+     */
+    @Override
+    public void process() {
+        if (!isTemporalAntiAliasingEnabled) {
+            return;
+        }
+
+        renderingActivity.start();
+
+        taaMaterial.setMatrix4("invViewProjMatrix", inverseViewProjectionMatrix, true);
+        taaMaterial.setMatrix4("prevViewProjMatrix", previousViewProjectionMatrix, true);
+        taaMaterial.setFloat3("cameraMotion", cameraMotion, true);
+        taaMaterial.setFloat2("jitterOffset", jitterX / sceneFbo.width(), jitterY / sceneFbo.height(), true);
+        taaMaterial.setFloat2("sceneTexelSize", 1.0f / sceneFbo.width(), 1.0f / sceneFbo.height(), true);
+        taaMaterial.setFloat("historyFeedback", isHistoryValid ? historyFeedback : 0.0f, true);
+
+        this.renderQuad.render();
+
+        copyColorBuffer(taaFbo, historyFbo);
+        isHistoryValid = true;
+
+        previousViewProjectionMatrix.set(viewProjectionMatrix);
+        previousCameraPosition.set(activeCamera.getPosition());
+
+        renderingActivity.end();
+    }
+
+    @Override
+    public void handleCommand(String command, String... arguments) {
+        switch (command) {
+            case "enable":
+                isTemporalAntiAliasingEnabled = true;
+                outputToScreenNode.setFbo(taaFbo);
+                break;
+            case "disable":
+                isTemporalAntiAliasingEnabled = false;
+                outputToScreenNode.setFbo(sceneFbo);
+                break;
+            default:
+                throw new RuntimeException("Unrecognized command: '" + command + "'");
+        }
+
+        isHistoryValid = false;
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        String propertyName = event.getPropertyName();
+
+        switch (propertyName) {
+            case POST_FBO_REGENERATION:
+                isHistoryValid = false;
+                break;
+
+            case RenderingConfig.FBO_SCALE:
+                updateOutputScale();
+                isHistoryValid = false;
+                break;
+
+            // default: no other cases are possible - see subscribe operations in the constructor and setDependencies().
+        }
+    }
+
+    private void copyColorBuffer(FBO source, FBO destination) {
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, source.getId());
+        glBindFramebuffer(GL_DRAW_FRAMEBUFFER, destination.getId());
+        glBlitFramebuffer(0, 0, source.width(), source.height(),
+                0, 0, destination.width(), destination.height(), GL_COLOR_BUFFER_BIT, GL_NEAREST);
+
+        // The DAG is not aware of the bindings above: as far as it is concerned, the TAA FBO is still bound.
+        glBindFramebuffer(GL_FRAMEBUFFER, taaFbo.getId());
+    }
+
+    private static float halton(int index, int base) {
+        float result = 0;
+        float fraction = 1.0f / base;
+        for (int i = index; i > 0; i /= base) {
+            result += (i % base) * fraction;
+            fraction /= base;
+        }
+        return result;
+    }
+}
@@ -2,9 +2,9 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.corerendering.rendering.dag.nodes;
 
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.context.Context;
 import org.terasology.engine.core.SimpleUri;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.dag.AbstractNode;
@@ -37,6 +37,8 @@ public class ToneMappingNode extends AbstractNode {
     public static final SimpleUri TONE_MAPPING_FBO_URI = new SimpleUri("engine:fbo.toneMapping");
     private static final ResourceUrn TONE_MAPPING_MATERIAL_URN = new ResourceUrn("CoreRendering:toneMapping");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private ScreenGrabber screenGrabber;
 
     private Material toneMappingMaterial;
@@ -88,7 +90,7 @@ public class ToneMappingNode extends AbstractNode {
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         // Specific Shader Parameters
         toneMappingMaterial.setFloat("exposure", screenGrabber.getExposure() * exposureBias, true);
@@ -97,6 +99,6 @@ public class ToneMappingNode extends AbstractNode {
         // Actual Node Processing
         this.renderQuad.render();
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 }
@@ -6,13 +6,14 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.dag.AbstractNode;
 import org.terasology.engine.rendering.opengl.PBO;
 import org.terasology.engine.rendering.opengl.ScreenGrabber;
+import org.terasology.engine.rendering.world.WorldRenderer;
 import org.terasology.gestalt.naming.Name;
 import org.terasology.math.TeraMath;
 import org.terasology.nui.properties.Range;
@@ -30,6 +31,8 @@ import org.terasology.nui.properties.Range;
 public class UpdateExposureNode extends AbstractNode {
     private static final Logger logger = LoggerFactory.getLogger(UpdateExposureNode.class);
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     @SuppressWarnings("FieldCanBeLocal")
     @Range(min = 0.0f, max = 10.0f)
     private float hdrExposureDefault = 5f;
@@ -47,6 +50,7 @@ public class UpdateExposureNode extends AbstractNode {
     private float hdrExposureAdjustmentSpeed = 0.05f;
 
     private ScreenGrabber screenGrabber;
+    private WorldRenderer worldRenderer;
 
     private RenderingConfig renderingConfig;
     private int downSampledSceneId;
@@ -57,6 +61,7 @@ public class UpdateExposureNode extends AbstractNode {
         super(nodeUri, providingModule, context);
 
         screenGrabber = context.get(ScreenGrabber.class);
+        worldRenderer = context.get(WorldRenderer.class);
 
         renderingConfig = context.get(Config.class).getRendering();
         // downSampledScene = requiresFbo(DownSamplerForExposureNode.FBO_1X1_CONFIG, context.get(ImmutableFbo.class));
@@ -73,12 +78,19 @@ public class UpdateExposureNode extends AbstractNode {
      * calculates the relative luminance of the scene and updates the exposure accordingly.
      *
      * If Eye Adaptation is disabled, sets the exposure to default day/night values.
+     *
+     * In VR mode the exposure is only updated while processing the first eye, so that both eyes share it
+     * and it adapts at the same speed as in mono mode.
      */
     // TODO: verify if this can be achieved entirely in the GPU, during tone mapping perhaps?
     @Override
     public void process() {
+        if (!worldRenderer.isFirstRenderingStageForCurrentFrame()) {
+            return;
+        }
+
         if (renderingConfig.isEyeAdaptation()) {
-            PerformanceMonitor.startActivity("rendering/" + getUri());
+            renderingActivity.start();
 
             float[] pixels = new float[3];
             writeOnlyPbo.readBackPixels(buffer -> {
@@ -107,7 +119,7 @@ public class UpdateExposureNode extends AbstractNode {
 
             screenGrabber.setExposure(TeraMath.lerp(screenGrabber.getExposure(), targetExposure, hdrExposureAdjustmentSpeed));
 
-            PerformanceMonitor.endActivity();
+            renderingActivity.end();
         } else {
             screenGrabber.setExposure(hdrExposureDefault);
         }
@@ -4,10 +4,10 @@
 package org.terasology.corerendering.rendering.dag.nodes;
 
 import org.joml.Vector3f;
+import org.terasology.corerendering.monitoring.RenderingActivity;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.mesh.Mesh;
 import org.terasology.engine.rendering.cameras.SubmersibleCamera;
@@ -44,6 +44,8 @@ import static org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDepen
 public class VignetteNode  extends AbstractNode implements PropertyChangeListener {
     private static final ResourceUrn VIGNETTE_MATERIAL_URN = new ResourceUrn("CoreRendering:vignette");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
     private RenderingConfig renderingConfig;
     private WorldProvider worldProvider;
     private WorldRenderer worldRenderer;
@@ -104,7 +106,7 @@ public class VignetteNode  extends AbstractNode implements PropertyChangeListene
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
+        renderingActivity.start();
 
         // Common Shader Parameters
 
@@ -119,7 +121,7 @@ public class VignetteNode  extends AbstractNode implements PropertyChangeListene
 
         renderQuad.render();
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
 
@@ -5,13 +5,14 @@ package org.terasology.corerendering.rendering.dag.nodes;
 import org.joml.Matrix3f;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
+import org.terasology.corerendering.monitoring.RenderingActivity;
+import org.terasology.corerendering.monitoring.RenderingProfiler;
+import org.terasology.corerendering.rendering.ChunkLodSelector;
 import org.terasology.engine.config.Config;
 import org.terasology.engine.config.RenderingConfig;
 import org.terasology.engine.context.Context;
-import org.terasology.engine.monitoring.PerformanceMonitor;
 import org.terasology.engine.rendering.assets.material.Material;
 import org.terasology.engine.rendering.assets.shader.ShaderProgramFeature;
-import org.terasology.engine.rendering.backdrop.BackdropProvider;
 import org.terasology.engine.rendering.cameras.SubmersibleCamera;
 import org.terasology.engine.rendering.dag.ConditionDependentNode;
 import org.terasology.engine.rendering.dag.StateChange;
@@ -26,15 +27,19 @@ import org.terasology.engine.rendering.opengl.FBO;
 import org.terasology.engine.rendering.opengl.fbms.DisplayResolutionDependentFbo;
 import org.terasology.engine.rendering.primitives.ChunkMesh;
 import org.terasology.engine.rendering.world.RenderQueuesHelper;
-import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.chunks.Chunks;
 import org.terasology.engine.world.chunks.RenderableChunk;
 import org.terasology.gestalt.assets.ResourceUrn;
 import org.terasology.gestalt.naming.Name;
+import org.terasology.joml.geom.AABBfc;
 import org.terasology.nui.properties.Range;
 
 import java.beans.PropertyChangeEvent;
 
 import static org.lwjgl.opengl.GL11.GL_FRONT;
+import static org.lwjgl.opengl.GL11.glDisable;
+import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL30.GL_CLIP_DISTANCE0;
 import static org.terasology.engine.rendering.primitives.ChunkMesh.RenderPhase.OPAQUE;
 
 /**
@@ -54,9 +59,14 @@ import static org.terasology.engine.rendering.primitives.ChunkMesh.RenderPhase.O
 public class WorldReflectionNode extends ConditionDependentNode {
     private static final ResourceUrn CHUNK_MATERIAL_URN = new ResourceUrn("CoreRendering:chunk");
 
+    private final RenderingActivity renderingActivity = RenderingActivity.forNode(this);
+
+    private final ReflectedBufferClearingNode reflectedBufferClearingNode;
+
+    private final Matrix4f modelViewMatrix = new Matrix4f();
+    private final Matrix3f normalMatrix = new Matrix3f();
+
     private RenderQueuesHelper renderQueues;
-    private BackdropProvider backdropProvider;
-    private WorldProvider worldProvider;
 
     private Material chunkMaterial;
     private RenderingConfig renderingConfig;
@@ -69,6 +79,9 @@ public class WorldReflectionNode extends ConditionDependentNode {
     private StateChange setNormalTerrain;
     private StateChange setHeightTerrain;
 
+    @SuppressWarnings("FieldCanBeLocal")
+    @Range(min = 0.0f, max = 1.0f)
+    private float reflectionDistanceFactor = 0.5f;
     @SuppressWarnings("FieldCanBeLocal")
     @Range(min = 0.0f, max = 0.5f)
     private float parallaxBias = 0.25f;
@@ -85,12 +98,13 @@ public class WorldReflectionNode extends ConditionDependentNode {
      *
      * This method also requests the material using the "chunk" shaders (vertex, fragment) to be enabled.
      */
-    public WorldReflectionNode(String nodeUri, Name providingModule, Context context) {
+    public WorldReflectionNode(String nodeUri, Name providingModule, Context context,
+                               ReflectedBufferClearingNode reflectedBufferClearingNode) {
         super(nodeUri, providingModule, context);
 
+        this.reflectedBufferClearingNode = reflectedBufferClearingNode;
+
         renderQueues = context.get(RenderQueuesHelper.class);
-        backdropProvider = context.get(BackdropProvider.class);
-        worldProvider = context.get(WorldProvider.class);
 
         activeCamera = worldRenderer.getActiveCamera();
 
@@ -145,17 +159,20 @@ public class WorldReflectionNode extends ConditionDependentNode {
      * which pixel is in front of the one already stored in the buffer.
      *
      * See: https://en.wikipedia.org/wiki/Deep_image_compositing
+     *
+     * Chunks further from the camera than reflectionDistanceFactor times the view distance are not rendered. In the frames in which
+     * the ReflectedBufferClearingNode keeps the previous reflection nothing is rendered, and the queue is discarded.
      */
     @Override
     public void process() {
-        PerformanceMonitor.startActivity("rendering/" + getUri());
-
-        chunkMaterial.activateFeature(ShaderProgramFeature.FEATURE_USE_FORWARD_LIGHTING);
+        if (!reflectedBufferClearingNode.isUpdatingReflection()) {
+            renderQueues.chunksOpaqueReflection.clear();
+            return;
+        }
 
-        // Common Shader Parameters
+        renderingActivity.start();
 
-        chunkMaterial.setFloat("daylight", backdropProvider.getDaylight(), true);
-        chunkMaterial.setFloat("time", worldProvider.getTime().getDays(), true);
+        chunkMaterial.activateFeature(ShaderProgramFeature.FEATURE_USE_FORWARD_LIGHTING);
 
         // Specific Shader Parameters
 
@@ -171,7 +188,9 @@ public class WorldReflectionNode extends ConditionDependentNode {
             chunkMaterial.setFloat4("parallaxProperties", parallaxBias, parallaxScale, 0.0f, 0.0f, true);
         }
 
-        chunkMaterial.setFloat("clip", activeCamera.getReflectionHeight(), true);
+        final float reflectionHeight = activeCamera.getReflectionHeight();
+        chunkMaterial.setFloat("clip", reflectionHeight, true);
+        glEnable(GL_CLIP_DISTANCE0);
 
         // Actual Node Processing
 
@@ -179,25 +198,28 @@ public class WorldReflectionNode extends ConditionDependentNode {
         int numberOfChunksThatAreNotReadyYet = 0;
 
         final Vector3f cameraPosition = activeCamera.getPosition();
-
-        Matrix4f modelViewMatrix = new Matrix4f();
-        Matrix4f model = new Matrix4f();
-        Matrix3f normalMatrix = new Matrix3f();
-        chunkMaterial.setMatrix4("projectionMatrix", activeCamera.getProjectionMatrix(), true);
+        final float viewDistance = renderingConfig.getViewDistance().getChunkDistance().x() * Chunks.SIZE_X / 2.0f;
+        final float maxReflectionDistance = reflectionDistanceFactor * viewDistance;
+        final float maxDistanceSquared = maxReflectionDistance * maxReflectionDistance;
 
         while (renderQueues.chunksOpaqueReflection.size() > 0) {
             RenderableChunk chunk = renderQueues.chunksOpaqueReflection.poll();
 
+            // Chunks entirely below the reflecting plane would be clipped away completely.
+            AABBfc chunkAabb = chunk.getAABB();
+            if (chunkAabb.maxY() < reflectionHeight || ChunkLodSelector.getDistanceSquared(chunkAabb, cameraPosition) > maxDistanceSquared) {
+                continue;
+            }
+
             if (chunk.hasMesh()) {
                 final ChunkMesh chunkMesh = chunk.getMesh();
                 final Vector3f chunkPosition = chunk.getRenderPosition();
 
                 chunkMesh.updateMaterial(chunkMaterial, chunkPosition, chunk.isAnimated());
 
-                model.setTranslation(chunkPosition.x() - cameraPosition.x(),
+                modelViewMatrix.set(activeCamera.getViewMatrix()).translate(chunkPosition.x() - cameraPosition.x(),
                         chunkPosition.y() - cameraPosition.y(),
                         chunkPosition.z() - cameraPosition.z());
-                modelViewMatrix.set(activeCamera.getViewMatrix()).mul(model);
                 chunkMaterial.setMatrix4("modelViewMatrix", modelViewMatrix, true);
                 chunkMaterial.setMatrix3("normalMatrix", modelViewMatrix.normal(normalMatrix), true);
                 numberOfRenderedTriangles += chunkMesh.render(OPAQUE);
@@ -207,12 +229,14 @@ public class WorldReflectionNode extends ConditionDependentNode {
             }
         }
 
+        glDisable(GL_CLIP_DISTANCE0);
         chunkMaterial.deactivateFeature(ShaderProgramFeature.FEATURE_USE_FORWARD_LIGHTING);
 
         worldRenderer.increaseTrianglesCount(numberOfRenderedTriangles);
+        RenderingProfiler.addTriangles(numberOfRenderedTriangles);
         worldRenderer.increaseNotReadyChunkCount(numberOfChunksThatAreNotReadyYet);
 
-        PerformanceMonitor.endActivity();
+        renderingActivity.end();
     }
 
     @Override